@@ -11,6 +11,13 @@ public class GameClient {
 	private String hostName;
 	private int portNumber;
 
+	//when the last message arrived, and how long the server took to answer the last message written
+	//(System.nanoTime, -1 until there is one), so an agent can tell how much of its time limit the network takes
+	private long lastReadNanos = -1;
+	private long lastWriteNanos;
+	private boolean awaitingReply;
+	private long lastRoundTripNanos = -1;
+
 
 	public GameClient() {}
 	
@@ -51,6 +58,8 @@ public class GameClient {
 		
 		try {
 			this.out.println(message);
+			this.lastWriteNanos = System.nanoTime();
+			this.awaitingReply = true;
 			System.out.println("Sent the following message to the server: " + message);
 		} catch (Exception e) {
 			System.out.println("Writing failed");
@@ -66,6 +75,11 @@ public class GameClient {
 			//set the timeout for user input
 			this.clientSocket.setSoTimeout(timeOutTime);
 			String input = this.in.readLine();
+			this.lastReadNanos = System.nanoTime();
+			if (this.awaitingReply) {
+				this.lastRoundTripNanos = this.lastReadNanos - this.lastWriteNanos;
+				this.awaitingReply = false;
+			}
                         System.out.println("Received the following message from the server: " + input);
 			return input;
 		} catch (Exception e) {
@@ -76,6 +90,14 @@ public class GameClient {
 
 	}
 	
+	public long getLastReadNanos() {
+		return this.lastReadNanos;
+	}
+
+	public long getLastRoundTripNanos() {
+		return this.lastRoundTripNanos;
+	}
+
 	public int getPort() {
 		return this.portNumber;
 	}
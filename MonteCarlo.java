@@ -0,0 +1,1250 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+class MonteCarlo{
+
+	private int timeLimit;
+	private double cp;
+	//collapses actions that lead to equivalent positions and keys the transposition table by the canonical position
+	private boolean symmetry;
+	private QuartoSymmetry symmetries;
+	//below the root this is only done while there are few pieces on the board, that is where equivalent actions are common,
+	//later on positions hardly ever have a symmetry left and the search is better off without the cost
+	private static final int SYMMETRY_MAXIMUM_PIECES = 8;
+	//number of search threads, 1 searches on the calling thread
+	private int threads;
+	//with several threads: false grows one tree per thread and merges their roots,
+	//true lets every thread search one shared tree
+	private boolean sharedTree;
+	//iterations done by all threads in the last search
+	private long lastIterations;
+
+	//entries in the transposition table of every tree, 0 searches a plain tree
+	private int transpositionTableSize;
+	//nodes every tree may hold before its least visited subtrees are evicted, 0 for no limit
+	private int nodeBudget;
+
+	//when set the trees of the last search are kept, and the next search starts from the node for its position
+	//there is one tree per thread searching on its own, otherwise just the first
+	private boolean treeReuse;
+	//the tree of every worker, with the spare one the kept part of it is copied into, and the tree's transposition table
+	private NodeArena[] trees;
+	private NodeArena[] spareTrees;
+	private TranspositionTable[] tables;
+
+	//pondering grows the kept trees on a background thread while the opponent thinks, stopRequested ends every grow loop
+	//it runs ponderThreads workers, 1 by default so the opponent and the server keep the other cores
+	private Thread ponderThread;
+	private int ponderThreads = 1;
+	private volatile boolean stopRequested;
+	private long ponderIterations;
+
+	//sets the deadline of every search when there is one, otherwise every search runs for timeLimit milliseconds
+	private QuartoTimeManager timeManager;
+	//grow reads the clock every CLOCK_CHECK_INTERVAL iterations and checks whether the decision is settled every EARLY_STOP_INTERVAL
+	private static final int CLOCK_CHECK_INTERVAL = 16;
+	private static final int EARLY_STOP_INTERVAL = 1024;
+	//every thread of a search stops after this many playouts even before the deadline, 0 for no limit, so searches can
+	//be compared by the playouts they take rather than the time (QuartoBenchmark rave)
+	private int playoutLimit;
+
+	//positions with at most solverEmptyCells empty cells are first given to the exact solver, which gets a share of the time
+	//and leaves the rest to the search when it does not finish
+	private QuartoSolver solver;
+	private int solverEmptyCells;
+	private static final double SOLVER_TIME_SHARE = 0.5;
+	private static final int SOLVER_TABLE_SIZE = 1 << 22;
+
+	//decisions for positions in the book are taken from it without searching
+	private QuartoOpeningBook openingBook;
+	//solved endgame positions, probed once for the decision at the root
+	private QuartoTablebase tablebase;
+
+	//leaf parallelism: when above 1, every new leaf is played out up to this many times at once on the fork-join pool
+	private int maxLeafBatch;
+	private ForkJoinPool leafPool;
+	//measured cost of one rollout in nanoseconds, used to size the batches
+	private volatile long rolloutNanos;
+	private LongAdder leafBatches;
+	private LongAdder leafRollouts;
+	//a batch may take at most this fraction of the time that is left
+	private static final int LEAF_BATCH_TIME_SLICES = 50;
+
+	//plays out the random games, kept for the whole search so no rollout allocates
+	private QuartoRollout rollout;
+	//the share of random plies in the rollouts, the rest take wins and avoid handing over winning pieces (QuartoRollout)
+	private double rolloutEpsilon = 1;
+	//placements a rollout plays before it stops and scores the position with QuartoEvaluator, 0 plays to the end
+	private int rolloutDepth;
+	//RAVE: selection and the decision blend a child's value with the all-moves-as-first value of its slot in the parent
+	//(NodeArena), weighted by sqrt(k / (3n + k)) for a child with n playouts, so the two count the same at raveEquivalence
+	//playouts and the child's own value takes over as it gets more; 0 goes by the children's own playouts only
+	private int raveEquivalence;
+	//picks the child to descend to everywhere below the root, and at the root unless sequential halving spends the
+	//playouts there instead, in which case the decision is the best of the candidates it has left
+	private QuartoSelectionPolicy selectionPolicy = QuartoSelectionPolicy.UCB1;
+	private boolean sequentialHalving;
+
+	public MonteCarlo(int timeLimit, double cp, boolean symmetry){
+		this(timeLimit, cp, symmetry, 1);
+	}
+	public MonteCarlo(int timeLimit, double cp, boolean symmetry, int threads){
+		this.timeLimit = timeLimit;
+		this.cp = cp;
+		this.symmetry = symmetry;
+		this.threads = Math.max(1, threads);
+		this.rollout = new QuartoRollout();
+	}
+	public void setSharedTree(boolean sharedTree){
+		this.sharedTree = sharedTree;
+	}
+	public long getLastIterations(){
+		return this.lastIterations;
+	}
+	public void setTranspositionTableSize(int transpositionTableSize){
+		this.transpositionTableSize = transpositionTableSize;
+	}
+	public void setNodeBudget(int nodeBudget){
+		this.nodeBudget = nodeBudget;
+	}
+	public void setTimeManager(QuartoTimeManager timeManager){
+		this.timeManager = timeManager;
+	}
+	//0 never solves
+	public void setEndgameSolver(int maximumEmptyCells){
+
+		this.solverEmptyCells = maximumEmptyCells;
+		this.solver = maximumEmptyCells > 0 ? new QuartoSolver(SOLVER_TABLE_SIZE) : null;
+	}
+	public void setOpeningBook(QuartoOpeningBook openingBook){
+		this.openingBook = openingBook;
+	}
+	public void setTablebase(QuartoTablebase tablebase){
+		this.tablebase = tablebase;
+	}
+	public void setRolloutEpsilon(double rolloutEpsilon){
+		this.rolloutEpsilon = rolloutEpsilon;
+	}
+	public void setRolloutDepth(int rolloutDepth){
+		this.rolloutDepth = rolloutDepth;
+	}
+	public void setPlayoutLimit(int playoutLimit){
+		this.playoutLimit = playoutLimit;
+	}
+	public void setRave(int raveEquivalence){
+		this.raveEquivalence = raveEquivalence;
+	}
+	public void setSelectionPolicy(QuartoSelectionPolicy selectionPolicy){
+		this.selectionPolicy = selectionPolicy;
+	}
+	//only searches use it, pondering does not decide anything to spread the rounds over
+	public void setSequentialHalving(boolean sequentialHalving){
+		this.sequentialHalving = sequentialHalving;
+	}
+	//at most the threads of a search, which is also what ponders every tree of a root-parallel search
+	public void setPonderThreads(int ponderThreads){
+		this.ponderThreads = Math.max(1, ponderThreads);
+	}
+	public void setTreeReuse(boolean treeReuse){
+
+		this.treeReuse = treeReuse;
+		this.trees = null;
+	}
+	private TranspositionTable createTranspositionTable(NodeArena tree){
+
+		if(this.transpositionTableSize <= 0)
+			return null;
+		return new TranspositionTable(this.transpositionTableSize, tree);
+	}
+	private static void printTranspositions(TranspositionTable table){
+
+		if(table != null)
+			System.out.println("Transpositions: " + table.getHits() + " hits, " + table.getMisses() + " misses, " + table.getReplacements() + " replacements");
+	}
+	public void setLeafParallelism(int maxLeafBatch){
+
+		this.maxLeafBatch = maxLeafBatch;
+		this.leafPool = ForkJoinPool.commonPool();
+		this.leafBatches = new LongAdder();
+		this.leafRollouts = new LongAdder();
+	}
+	//returns the best pieceID to hand over when piece is null, otherwise the best cell index to place piece on
+	public int UCTSearch(QuartoBoard board, Integer piece){
+
+		stopPondering();
+		long endTime;
+		if(this.timeManager != null)
+			endTime = this.timeManager.startDecision(board);
+		else
+			endTime = System.nanoTime() + this.timeLimit * 1000000L;
+
+		int action = findForcedAction(board, piece);
+		if(action != -1){
+
+			System.out.println("Forced action: " + action);
+			this.lastIterations = 0;
+		}else{
+			action = lookUpOpeningBook(board, piece);
+			if(action == -1)
+				action = lookUpTablebase(board, piece);
+			if(action == -1)
+				action = solve(board, piece, endTime);
+			if(action == -1)
+				action = search(board, piece, endTime);
+		}
+		if(this.timeManager != null)
+			this.timeManager.endDecision();
+		return action;
+	}
+	//endTime is a System.nanoTime deadline
+	private int search(QuartoBoard board, Integer piece, long endTime){
+
+		setSymmetries(board);
+		ensureTrees();
+
+		if(this.threads == 1){
+
+			NodeArena tree = getTree(0, board, piece, true);
+			startHalving(tree, endTime);
+			TranspositionTable table = this.tables[0];
+			this.lastIterations = grow(tree, table, this.rollout, endTime, true);
+			printTree("Root", tree);
+			printTranspositions(table);
+			System.out.println("Rollouts: " + this.rollout.getRollouts() + " (" + (int) this.rollout.getRolloutsPerSecond() + " per second)");
+			if(this.rolloutDepth > 0)
+				System.out.println("Truncated rollouts: " + this.rollout.getTruncations());
+			if(this.maxLeafBatch > 1){
+
+				System.out.println("Leaf rollouts: " + this.leafRollouts.sumThenReset() + " in " + this.leafBatches.sumThenReset() + " batches");
+			}
+			this.rollout.resetStatistics();
+			return tree.getChildAction(tree.getRoot(), bestChildIndex(tree, tree.getRoot(), 0));
+		}
+		if(this.sharedTree){
+
+			NodeArena tree = treeParallelSearch(board, piece, endTime);
+			printTree("Root", tree);
+			return tree.getChildAction(tree.getRoot(), bestChildIndex(tree, tree.getRoot(), 0));
+		}
+		return rootParallelSearch(board, piece, endTime);
+	}
+	private int lookUpOpeningBook(QuartoBoard board, Integer piece){
+
+		if(this.openingBook == null)
+			return -1;
+		int action = this.openingBook.getAction(board, piece == null ? -1 : piece);
+		if(action != -1){
+
+			System.out.println("Book action: " + action);
+			this.lastIterations = 0;
+		}
+		return action;
+	}
+	//like the solver, only a won or drawn position is played from the table
+	private int lookUpTablebase(QuartoBoard board, Integer piece){
+
+		int emptyCells = board.getNumberOfRows() * board.getNumberOfColumns() - board.getNumberOfMoves();
+		if(this.tablebase == null || emptyCells > this.tablebase.getMaximumEmptyCells())
+			return -1;
+		int entry = this.tablebase.lookUp(board, piece == null ? -1 : piece);
+		if(entry == -1 || QuartoTablebase.getValue(entry) == QuartoSolver.LOSS)
+			return -1;
+
+		System.out.println("Tablebase action: " + QuartoTablebase.getAction(entry) + ", value " + QuartoTablebase.getValue(entry));
+		this.lastIterations = 0;
+		return QuartoTablebase.getAction(entry);
+	}
+	//the solver's action when it proves a win or a draw within its share of the time, otherwise -1:
+	//a lost position is left to the search, which still finds the lines where the opponent can go wrong
+	private int solve(QuartoBoard board, Integer piece, long endTime){
+
+		int emptyCells = board.getNumberOfRows() * board.getNumberOfColumns() - board.getNumberOfMoves();
+		if(this.solver == null || emptyCells > this.solverEmptyCells)
+			return -1;
+
+		long start = System.nanoTime();
+		long deadline = start + (long) ((endTime - start) * SOLVER_TIME_SHARE);
+		boolean solved = this.solver.solve(board, piece == null ? -1 : piece, deadline);
+		long millis = (System.nanoTime() - start) / 1000000;
+		if(!solved){
+
+			System.out.println("Solver: unsolved after " + this.solver.getPositions() + " positions, " + millis + " ms");
+			return -1;
+		}
+		System.out.println("Solver: value " + this.solver.getValue() + " after " + this.solver.getPositions() + " positions, " + millis + " ms");
+		if(this.solver.getValue() == QuartoSolver.LOSS)
+			return -1;
+		this.lastIterations = 0;
+		return this.solver.getBestAction();
+	}
+	//an action that needs no search: the only one left, a placement that wins, or the only piece that does not let
+	//the opponent win straight away (any piece when they all do), -1 when the position has to be searched
+	private static int findForcedAction(QuartoBoard board, Integer piece){
+
+		int[] moves = getPossibleMoves(board);
+
+		if(piece != null){
+
+			if(moves.length == 1)
+				return moves[0];
+			int winningCells = board.getWinningCells(piece);
+			if(winningCells != 0)
+				return Integer.numberOfTrailingZeros(winningCells);
+			return -1;
+		}
+
+		int[] pieces = getPossiblePieces(board);
+		if(pieces.length == 1)
+			return pieces[0];
+
+		int safePieces = ~board.getWinningPieces() & ~board.getPiecesInPlayMask() & (int) ((1L << board.getNumberOfPieces()) - 1);
+		if(safePieces == 0)
+			return pieces[0];
+		if(Integer.bitCount(safePieces) == 1)
+			return Integer.numberOfTrailingZeros(safePieces);
+		return -1;
+	}
+	//keeps searching the position after handing over piece, where the opponent is to act, until the next search starts
+	//or for as long as a search could run, since the opponent's answer can not take longer
+	//the trees are set up on the background thread as well, so the caller can send its answer straight away
+	public void startPondering(QuartoBoard board, int piece){
+
+		stopPondering();
+		if(!this.treeReuse)
+			return;
+
+		setSymmetries(board);
+		QuartoBoard ponderBoard = new QuartoBoard(board);
+		long endTime = this.timeManager != null ? this.timeManager.getPonderDeadline() : System.nanoTime() + this.timeLimit * 1000000L;
+		this.ponderThread = new Thread(() -> ponder(ponderBoard, piece, endTime));
+		this.ponderThread.setDaemon(true);
+		this.ponderThread.start();
+	}
+	//waits for the pondering threads to finish their current iteration, their statistics stay in the kept trees
+	public void stopPondering(){
+
+		if(this.ponderThread == null)
+			return;
+
+		this.stopRequested = true;
+		joinAll(new Thread[] {this.ponderThread});
+		this.ponderThread = null;
+		this.stopRequested = false;
+		System.out.println("Pondered " + this.ponderIterations + " playouts");
+	}
+	private void ponder(QuartoBoard board, int piece, long endTime){
+
+		ensureTrees();
+
+		//one tree for a single or shared search, like the search itself, and with root parallelism one per worker, the
+		//trees of threads that do not ponder are only moved to the position at the next search
+		int threads = Math.min(this.ponderThreads, this.threads);
+		int trees = this.threads == 1 || this.sharedTree ? 1 : threads;
+		Thread[] workers = new Thread[threads];
+		long[] iterations = new long[threads];
+
+		for(int i = 0; i < trees && !this.stopRequested; i++){
+
+			NodeArena tree = getTree(i, board, piece, false);
+			TranspositionTable table = this.tables[i];
+
+			for(int j = i; j < threads; j += trees){
+
+				final int worker = j;
+				workers[j] = new Thread(() -> iterations[worker] = grow(tree, table, new QuartoRollout(), endTime, false));
+				workers[j].setDaemon(true);
+				workers[j].start();
+			}
+		}
+		for(Thread worker: workers){
+
+			if(worker != null)
+				joinAll(new Thread[] {worker});
+		}
+		this.ponderIterations = 0;
+		for(long workerIterations: iterations){
+			this.ponderIterations += workerIterations;
+		}
+	}
+	//every thread descends the same tree, virtual losses steer them apart and the statistics are updated atomically
+	NodeArena treeParallelSearch(QuartoBoard board, Integer piece, long endTime){
+
+		setSymmetries(board);
+		ensureTrees();
+		NodeArena tree = getTree(0, board, piece, true);
+		startHalving(tree, endTime);
+		TranspositionTable table = this.tables[0];
+		QuartoRollout[] rollouts = new QuartoRollout[this.threads];
+		long[] iterations = new long[this.threads];
+		Thread[] workers = new Thread[this.threads];
+
+		for(int i = 0; i < this.threads; i++){
+
+			final int worker = i;
+			rollouts[i] = new QuartoRollout();
+			workers[i] = new Thread(() -> iterations[worker] = grow(tree, table, rollouts[worker], endTime, true));
+			workers[i].start();
+		}
+		joinAll(workers);
+		printTranspositions(table);
+
+		this.lastIterations = 0;
+		for(int i = 0; i < this.threads; i++){
+
+			System.out.println("Thread " + i + ": " + iterations[i] + " playouts, " + rollouts[i].getRollouts() + " rollouts (" + (int) rollouts[i].getRolloutsPerSecond() + " per second)");
+			this.lastIterations += iterations[i];
+		}
+		return tree;
+	}
+	private static void joinAll(Thread[] workers){
+
+		for(Thread worker: workers){
+
+			try{
+				worker.join();
+			}catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	//every worker grows its own tree on its own copy of the board until the deadline,
+	//then the statistics of their root children are added up to pick the action
+	private int rootParallelSearch(QuartoBoard board, Integer piece, long endTime){
+
+		NodeArena[] trees = new NodeArena[this.threads];
+		QuartoRollout[] rollouts = new QuartoRollout[this.threads];
+		long[] iterations = new long[this.threads];
+		Thread[] workers = new Thread[this.threads];
+
+		for(int i = 0; i < this.threads; i++){
+
+			final int worker = i;
+			rollouts[i] = new QuartoRollout();
+			workers[i] = new Thread(() -> {
+				trees[worker] = getTree(worker, board, piece, true);
+				startHalving(trees[worker], endTime);
+				iterations[worker] = grow(trees[worker], this.tables[worker], rollouts[worker], endTime, true);
+			});
+			workers[i].start();
+		}
+		joinAll(workers);
+
+		int[] n = new int[Integer.SIZE];
+		int[] q = new int[Integer.SIZE];
+		int[] amafN = new int[Integer.SIZE];
+		int[] amafQ = new int[Integer.SIZE];
+		//actions proven to win or to lose for the root player in any of the trees
+		int provenWins = 0;
+		int provenLosses = 0;
+		//under sequential halving only the actions still candidates in some tree are picked from
+		int candidates = this.sequentialHalving ? 0 : -1;
+		long totalRollouts = 0;
+		//the playouts of this search only, a reused tree's root also counts those of earlier ones
+		this.lastIterations = 0;
+
+		for(int i = 0; i < this.threads; i++){
+
+			NodeArena tree = trees[i];
+			int root = tree.getRoot();
+			for(int j = 0; j < tree.getNumberOfChildSlots(root); j++){
+
+				int child = tree.getChild(root, j);
+				if(child == NodeArena.NONE)
+					continue;
+
+				int action = tree.getChildAction(root, j);
+				n[action] += tree.getN(child);
+				q[action] += tree.getQ(child);
+				if(tree.hasAmaf()){
+
+					amafN[action] += tree.getChildAmafN(root, j);
+					amafQ[action] += tree.getChildAmafQ(root, j);
+				}
+				if(tree.getProven(child) == 1)
+					provenWins |= 1 << action;
+				else if(tree.getProven(child) == -1)
+					provenLosses |= 1 << action;
+				if(tree.getRootHalving() != null && tree.getRootHalving().isCandidate(j))
+					candidates |= 1 << action;
+			}
+			System.out.println("Thread " + i + ": " + tree.getN(root) + " playouts, " + tree.getLiveNodes() + " nodes, " + (tree.getEvictions() > 0 ? tree.getEvictions() + " evictions, " : "") + rollouts[i].getRollouts() + " rollouts (" + (int) rollouts[i].getRolloutsPerSecond() + " per second)");
+			totalRollouts += rollouts[i].getRollouts();
+			this.lastIterations += iterations[i];
+		}
+
+		if(provenWins != 0){
+
+			System.out.println("Proven win: " + Integer.numberOfTrailingZeros(provenWins));
+			return Integer.numberOfTrailingZeros(provenWins);
+		}
+		//the root player picks the action, so the highest average score wins, a proven loss only when every action is one
+		int bestAction = -1;
+		double bestValue = 0;
+		System.out.println("Merged root:");
+		for(int action = 0; action < n.length; action++){
+
+			if(n[action] == 0)
+				continue;
+
+			System.out.println("  " + action + " n=" + n[action] + " q=" + q[action]);
+			double value = getRaveValue((double) q[action] / n[action], n[action], amafN[action], amafQ[action]);
+			if((provenLosses & (1 << action)) != 0 || (candidates & (1 << action)) == 0)
+				value = Double.NEGATIVE_INFINITY;
+			if(bestAction == -1 || value > bestValue){
+
+				bestAction = action;
+				bestValue = value;
+			}
+		}
+		System.out.println("Rollouts: " + totalRollouts + " over " + this.threads + " threads");
+		return bestAction;
+	}
+	private void setSymmetries(QuartoBoard board){
+
+		if(this.symmetry)
+			this.symmetries = QuartoSymmetry.forBoard(board);
+	}
+	private void ensureTrees(){
+
+		if(this.trees != null && this.trees.length == this.threads)
+			return;
+		this.trees = new NodeArena[this.threads];
+		this.spareTrees = new NodeArena[this.threads];
+		this.tables = new TranspositionTable[this.threads];
+	}
+	//the tree of worker for a search of board with piece in hand (null when a piece has to be chosen) and player to act:
+	//with tree reuse the subtree of its last tree for this position, if it was searched, otherwise a new tree
+	//the tree's transposition table is left in tables[worker]
+	private NodeArena getTree(int worker, QuartoBoard board, Integer piece, boolean player){
+
+		NodeArena tree = this.trees[worker];
+		int root = NodeArena.NONE;
+		if(this.treeReuse && tree != null)
+			root = findDescendant(tree, board, piece, player);
+
+		if(root == NodeArena.NONE){
+
+			if(tree == null)
+				tree = new NodeArena(board);
+			else
+				tree.reset(board);
+			this.tables[worker] = createTranspositionTable(tree);
+			tree.setAmaf(this.raveEquivalence > 0);
+			createRoot(tree, piece, player);
+		}else{
+
+			//the kept subtree is copied into the spare tree, which leaves the rest of the old one free for the next copy
+			NodeArena keptTree = this.spareTrees[worker];
+			if(keptTree == null)
+				keptTree = new NodeArena(board);
+			//the statistics of the actions still to come are kept along with the subtree
+			keptTree.setAmaf(this.raveEquivalence > 0);
+			this.tables[worker] = createTranspositionTable(keptTree);
+			keptTree.copySubtree(tree, root, board, this.tables[worker], this::nodeKey);
+			System.out.println("Reusing subtree with " + keptTree.getN(keptTree.getRoot()) + " playouts, " + keptTree.getLiveNodes() + " of " + tree.getLiveNodes() + " nodes kept");
+			this.spareTrees[worker] = tree;
+			tree = keptTree;
+		}
+		tree.setNodeBudget(this.nodeBudget);
+		tree.setRootHalving(null);
+		this.trees[worker] = tree;
+		return tree;
+	}
+	//follows the pieces placed since tree was searched down to the node for board with piece in hand (null when a piece
+	//has to be chosen) and player to act, returns NONE when that node was never expanded or the moves cannot be told apart
+	private static int findDescendant(NodeArena tree, QuartoBoard board, Integer piece, boolean player){
+
+		QuartoBoard nodeBoard = new QuartoBoard(board);
+		int node = tree.getRoot();
+
+		while(node != NodeArena.NONE && tree.getKind(node) != NodeArena.TERMINATING){
+
+			int nodePiece = tree.getPosition(node, nodeBoard);
+			int newPieces = board.getPiecesInPlayMask() & ~nodeBoard.getPiecesInPlayMask();
+
+			//every piece on the node's board has to be on the same cell of board, which the hashes show
+			long hash = board.getZobristHash();
+			for(int bits = newPieces; bits != 0; bits &= bits - 1){
+
+				int pieceID = Integer.numberOfTrailingZeros(bits);
+				hash ^= QuartoBoard.getZobristKey(board.getPieceRow(pieceID) * board.getNumberOfColumns() + board.getPieceColumn(pieceID), pieceID);
+			}
+			if(hash != nodeBoard.getZobristHash())
+				return NodeArena.NONE;
+
+			int action;
+			if(tree.getKind(node) == NodeArena.SELECT_PIECE){
+
+				if(newPieces == 0 && piece == null)
+					return tree.getPlayer(node) == player ? node : NodeArena.NONE;
+
+				if(newPieces == 0)
+					action = piece;
+				else if(Integer.bitCount(newPieces) == 1)
+					action = Integer.numberOfTrailingZeros(newPieces);
+				else
+					return NodeArena.NONE;
+			}else{
+
+				if(newPieces == 0)
+					return piece != null && piece == nodePiece && tree.getPlayer(node) == player ? node : NodeArena.NONE;
+
+				if((newPieces & (1 << nodePiece)) == 0)
+					return NodeArena.NONE;
+				action = board.getPieceRow(nodePiece) * board.getNumberOfColumns() + board.getPieceColumn(nodePiece);
+			}
+			node = findChild(tree, node, action);
+		}
+		return NodeArena.NONE;
+	}
+	private static int findChild(NodeArena tree, int node, int action){
+
+		for(int i = 0; i < tree.getNumberOfChildSlots(node); i++){
+
+			if(tree.getChildAction(node, i) == action)
+				return tree.getChild(node, i);
+		}
+		return NodeArena.NONE;
+	}
+	//the table key of the position on board with piece in hand, the same one positionKey gives for the action leading to it
+	private long nodeKey(QuartoBoard board, int piece){
+
+		if(useSymmetries(board.getNumberOfMoves()))
+			return this.symmetries.getCanonicalHash(board, piece);
+		return board.getZobristHash() ^ QuartoBoard.getZobristHandKey(piece);
+	}
+	//adds the root for the tree's board with piece in hand and player to act, and its child slots
+	private void createRoot(NodeArena tree, Integer piece, boolean player){
+
+		QuartoBoard board = tree.getRootBoard();
+		int root;
+
+		if(piece == null)
+			root = tree.addNode(NodeArena.SELECT_PIECE, player, -1, NodeArena.NONE, board.getZobristHash() ^ QuartoBoard.getZobristHandKey(-1), NodeArena.UNPROVEN);
+		else
+			root = tree.addNode(NodeArena.SELECT_MOVE, player, piece, NodeArena.NONE, board.getZobristHash() ^ QuartoBoard.getZobristHandKey(piece), NodeArena.UNPROVEN);
+		tree.setRoot(root);
+		tree.startChildren(root);
+		int actions = getActions(tree, root, board, tree.getPieceInHand(root));
+		tree.setChildren(root, actions, getPriors(board, tree.getPieceInHand(root), actions));
+	}
+	//lets sequential halving spend the playouts at the root of tree until the System.nanoTime deadline, when it is used
+	private void startHalving(NodeArena tree, long endTime){
+
+		if(this.sequentialHalving)
+			tree.setRootHalving(new QuartoSequentialHalving(tree.getNumberOfChildSlots(tree.getRoot()), endTime));
+	}
+	//the priors of the actions in the bit mask for the selection policy, null when it does not use any
+	private float[] getPriors(QuartoBoard board, int piece, int actions){
+		return this.selectionPolicy.usesPriors() ? QuartoSelectionPolicy.Puct.getPriors(board, piece, actions) : null;
+	}
+	private boolean useSymmetries(int piecesOnBoard){
+		return this.symmetries != null && piecesOnBoard <= SYMMETRY_MAXIMUM_PIECES;
+	}
+	//the actions of node as a bit mask, its position is on board with piece in hand
+	//one action out of every group that leads to equivalent positions is kept while symmetries are used
+	private int getActions(NodeArena tree, int node, QuartoBoard board, int piece){
+
+		boolean symmetric = this.symmetries != null && (node == tree.getRoot() || useSymmetries(board.getNumberOfMoves()));
+		int actions;
+
+		if(tree.getKind(node) == NodeArena.SELECT_PIECE){
+
+			actions = ~board.getPiecesInPlayMask() & (int) ((1L << board.getNumberOfPieces()) - 1);
+			//every piece is the same on an empty board
+			if(Integer.bitCount(actions) == board.getNumberOfPieces())
+				actions = 1;
+			if(symmetric)
+				actions &= this.symmetries.getDistinctPieces(board);
+			return actions;
+		}
+		int cells = board.getNumberOfRows() * board.getNumberOfColumns();
+		actions = ~board.getOccupiedCellMask() & (int) ((1L << cells) - 1);
+		//on an empty board only the center needs to be tried
+		if(Integer.bitCount(actions) == cells)
+			actions = 1 << ((board.getNumberOfRows() / 2) * board.getNumberOfColumns() + board.getNumberOfColumns() / 2);
+		if(symmetric)
+			actions &= this.symmetries.getDistinctMoves(board, piece);
+		return actions;
+	}
+	//hash of the position that action leads to from a node of the given kind whose position is on board with piece in hand
+	//positions with few pieces are hashed by their canonical form, so equivalent ones share a table entry
+	private long positionKey(int kind, QuartoBoard board, int piece, int action){
+
+		if(kind == NodeArena.SELECT_PIECE){
+
+			if(useSymmetries(board.getNumberOfMoves()))
+				return this.symmetries.getCanonicalHash(board, action);
+			return NodeArena.getChildKey(kind, board, piece, action);
+		}
+		if(!useSymmetries(board.getNumberOfMoves() + 1))
+			return NodeArena.getChildKey(kind, board, piece, action);
+
+		int row = action / board.getNumberOfColumns();
+		int column = action % board.getNumberOfColumns();
+		board.insertPieceOnBoard(row, column, piece);
+		long key = this.symmetries.getCanonicalHash(board, -1);
+		board.removePieceFromBoard(row, column);
+		return key;
+	}
+	//runs search iterations from the root until the System.nanoTime deadline, until the decision at the root is settled
+	//when earlyStop is set or until stopRequested, and returns how many playouts were backed up
+	private long grow(NodeArena tree, TranspositionTable table, QuartoRollout rollout, long endTime, boolean earlyStop){
+
+		long iterations = 0;
+		long loops = 0;
+		long startTime = System.nanoTime();
+		int root = tree.getRoot();
+		int startN = tree.getN(root);
+		//the position of the node to play out is rebuilt on this board
+		QuartoBoard board = new QuartoBoard(tree.getRootBoard());
+		//with transpositions a node can have several parents, so backup follows the path that was actually taken
+		int[] path = new int[2 * board.getNumberOfRows() * board.getNumberOfColumns() + 2];
+
+		//a proven root needs no more playouts
+		while(!this.stopRequested && tree.getProven(root) == NodeArena.UNPROVEN && (this.playoutLimit <= 0 || iterations < this.playoutLimit)){
+
+			//the first check comes after a few iterations, so a search that starts late still has a child to pick
+			if(loops > 0 && loops % CLOCK_CHECK_INTERVAL == 0){
+
+				long now = System.nanoTime();
+				if(now - endTime >= 0)
+					break;
+				//only managed searches stop early, one with a plain time limit always runs for all of it, and pondering
+				//goes on below a settled decision of the opponent
+				if(earlyStop && this.timeManager != null && loops % EARLY_STOP_INTERVAL == 0 && isDecided(tree, root, tree.getN(root) - startN, now - startTime, endTime - now))
+					break;
+			}
+			loops++;
+
+			long stamp = tree.startIteration(table);
+			try{
+				iterations += iterate(tree, path, board, table, rollout, endTime);
+			}finally{
+				tree.endIteration(stamp);
+			}
+		}
+		return iterations;
+	}
+	//one search iteration, returns how many playouts it backed up
+	private int iterate(NodeArena tree, int[] path, QuartoBoard board, TranspositionTable table, QuartoRollout rollout, long endTime){
+
+		int depth = treePolicy(tree, path, board, table);
+		int leaf = path[depth - 1];
+		//proofs are never taken back, so a leaf that is unproven here had its position put on board
+		int proven = tree.getProven(leaf);
+		int score;
+
+		if(this.maxLeafBatch > 1 && proven == NodeArena.UNPROVEN){
+
+			int batch = leafBatchSize(endTime);
+			RolloutBatch rollouts = new RolloutBatch(board, tree.getPieceInHand(leaf), tree.getPlayer(leaf), batch);
+			score = leafPool.invoke(rollouts);
+			leafBatches.increment();
+			backup(tree, path, depth, batch, score, rollouts.decisive);
+			//the batch's own games are not recorded, so only the tree part of the playouts counts for RAVE
+			if(tree.hasAmaf())
+				addAmafResults(tree, path, depth, batch, score, null);
+			return batch;
+		}
+
+		//scores are from the point of view of the root player (player == true), a proven node scores its value
+		boolean amaf = tree.hasAmaf() && proven == NodeArena.UNPROVEN;
+		if(proven != NodeArena.UNPROVEN){
+			score = proven;
+		}else{
+
+			rollout.setRecording(amaf);
+			score = defaultPolicy(rollout, board, tree.getPieceInHand(leaf), tree.getPlayer(leaf));
+		}
+
+		backup(tree, path, depth, 1, score, score != 0 ? 1 : 0);
+		if(tree.hasAmaf())
+			addAmafResults(tree, path, depth, 1, score, amaf ? rollout : null);
+		return 1;
+	}
+	//adds the playouts to the all-moves-as-first statistics of the child slots of every node on the path: a slot counts
+	//them when its action was taken anywhere below the node, on the path or, when rollout is given, in its last game,
+	//for the node's player when they took it and against them when the other player did, since every cell is filled and
+	//every piece handed over by one of the two; placements count by cell whatever the piece, a node's piece is placed at
+	//once, so only the cell tells the placements below it apart from its own children
+	//the actions are gathered bottom up, and a transposition from a symmetric position starts them over, since the
+	//actions below it are in the coordinates of that position
+	private static void addAmafResults(NodeArena tree, int[] path, int depth, int playouts, int totalScore, QuartoRollout rollout){
+
+		//cells placed on and pieces handed over by the root player (player == true) and by the other one
+		int cells = rollout != null ? rollout.getRecordedCells(true) : 0;
+		int otherCells = rollout != null ? rollout.getRecordedCells(false) : 0;
+		int pieces = rollout != null ? rollout.getRecordedPieces(true) : 0;
+		int otherPieces = rollout != null ? rollout.getRecordedPieces(false) : 0;
+
+		for(int i = depth - 1; i >= 0; i--){
+
+			int node = path[i];
+			boolean player = tree.getPlayer(node);
+			boolean placing = tree.getKind(node) == NodeArena.SELECT_MOVE;
+			if(i < depth - 1){
+
+				int action = getPathAction(tree, node, path[i + 1]);
+				if(action == -1){
+					cells = otherCells = pieces = otherPieces = 0;
+				}else if(placing){
+
+					if(player)
+						cells |= 1 << action;
+					else
+						otherCells |= 1 << action;
+				}else if(player){
+					pieces |= 1 << action;
+				}else{
+					otherPieces |= 1 << action;
+				}
+			}
+
+			//the scores are the root player's, so the other player's actions count with them flipped
+			int played = placing ? (cells | otherCells) : (pieces | otherPieces);
+			int playedByOther = placing ? (player ? otherCells : cells) : (player ? otherPieces : pieces);
+			for(int j = 0; played != 0 && j < tree.getNumberOfChildSlots(node); j++){
+
+				int bit = 1 << tree.getChildAction(node, j);
+				if((played & bit) != 0)
+					tree.addChildAmafResults(node, j, playouts, (playedByOther & bit) != 0 ? -totalScore : totalScore);
+			}
+		}
+	}
+	//the action node took to child on the path, -1 when child is a transposition from a position other than the one it
+	//leads to, which is in other coordinates
+	private static int getPathAction(NodeArena tree, int node, int child){
+
+		if(tree.getParent(child) == node)
+			return tree.getAction(child);
+		for(int j = 0; j < tree.getNumberOfChildSlots(node); j++){
+
+			if(tree.getChild(node, j) != child)
+				continue;
+			//the keys are exact, so the child is this very position when its key is the one the action leads to
+			int action = tree.getChildAction(node, j);
+			long key = tree.getKey(node) ^ QuartoBoard.getZobristHandKey(tree.getPieceInHand(node));
+			if(tree.getKind(node) == NodeArena.SELECT_PIECE)
+				key ^= QuartoBoard.getZobristHandKey(action);
+			else
+				key ^= QuartoBoard.getZobristKey(action, tree.getPieceInHand(node)) ^ QuartoBoard.getZobristHandKey(-1);
+			return key == tree.getKey(child) ? action : -1;
+		}
+		return -1;
+	}
+	//true when the most visited root child is also the one that would be picked and no other child can catch up
+	//on visits in the time left at the rate playouts have been going so far
+	private boolean isDecided(NodeArena tree, int root, long playouts, long elapsed, long remaining){
+
+		if(playouts <= 0 || elapsed <= 0 || tree.getNumberOfRemainingMoves(root) > 0)
+			return false;
+		if(tree.getNumberOfChildSlots(root) == 1)
+			return true;
+		//sequential halving spreads its rounds over all the time there is
+		if(tree.getRootHalving() != null)
+			return false;
+
+		int mostVisited = -1;
+		int first = 0;
+		int second = 0;
+		for(int i = 0; i < tree.getNumberOfChildSlots(root); i++){
+
+			int child = tree.getChild(root, i);
+			if(child == NodeArena.NONE)
+				continue;
+
+			if(mostVisited == -1 || tree.getN(child) > first){
+
+				second = first;
+				first = tree.getN(child);
+				mostVisited = i;
+			}else if(tree.getN(child) > second){
+				second = tree.getN(child);
+			}
+		}
+		if(mostVisited == -1 || mostVisited != bestChildIndex(tree, root, 0))
+			return false;
+		return first - second > (double) playouts * remaining / elapsed;
+	}
+	//walks down from the root filling in path, returns the length of the path, the last node on it is the one to play out
+	//and unless it is proven its position is left on board
+	private int treePolicy(NodeArena tree, int[] path, QuartoBoard board, TranspositionTable table){
+
+		int node = tree.getRoot();
+		int depth = 0;
+		path[depth++] = node;
+
+		//proven subtrees are not searched any further, their node is played out as its value
+		while(tree.getProven(node) == NodeArena.UNPROVEN){
+
+			//a node gets its child slots when it is reached again after its own playout, as long as the tree can grow,
+			//a full tree only plays out from the nodes it has
+			boolean canGrow = tree.canGrow();
+			if(!tree.hasChildren(node) && canGrow && tree.startChildren(node)){
+
+				int piece = tree.getPosition(node, board);
+				int actions = getActions(tree, node, board, piece);
+				tree.setChildren(node, actions, getPriors(board, piece, actions));
+			}
+			int index = tree.hasChildren(node) && canGrow ? tree.claimRemainingMove(node) : -1;
+			if(index != -1){
+
+				path[depth++] = expand(tree, node, index, board, table);
+				return depth;
+			}
+
+			int child;
+			if(depth == 1 && tree.getRootHalving() != null)
+				child = sampleRootChild(tree, node, tree.getRootHalving());
+			else
+				child = bestChild(tree, node, this.cp, tree.hasAmaf());
+
+			//other threads are still building every child of this node, or it can not have any, so play out from the
+			//node itself
+			if(child == NodeArena.NONE){
+
+				tree.getPosition(node, board);
+				return depth;
+			}
+
+			tree.addVirtualLoss(child);
+			path[depth++] = child;
+			node = child;
+		}
+		return depth;
+	}
+	//adds the child for slot index of node and leaves its position on board
+	private int expand(NodeArena tree, int node, int index, QuartoBoard board, TranspositionTable table){
+
+		int piece = tree.getPosition(node, board);
+		int kind = tree.getKind(node);
+		int action = tree.getChildAction(node, index);
+
+		//with symmetries an equivalent position found in the table stands in for this one,
+		//its own position and actions are used below it and its value is the same
+		long key = table != null ? positionKey(kind, board, piece, action) : 0;
+
+		if(table != null){
+
+			int child = table.get(key);
+			if(child != NodeArena.NONE){
+
+				tree.addVirtualLoss(child);
+				tree.setChild(node, index, child);
+				if(tree.getProven(child) == NodeArena.UNPROVEN)
+					tree.getPosition(child, board);
+				return child;
+			}
+		}
+
+		int child;
+		boolean player = tree.getPlayer(node);
+		long childKey = NodeArena.getChildKey(kind, board, piece, action);
+
+		if(kind == NodeArena.SELECT_PIECE){
+
+			//the other player places the piece that was handed over
+			child = tree.addNode(NodeArena.SELECT_MOVE, !player, action, node, childKey, NodeArena.UNPROVEN);
+		}else{
+
+			int row = action / board.getNumberOfColumns();
+			int col = action % board.getNumberOfColumns();
+			board.insertPieceOnBoard(row, col, piece);
+
+			if(isWin(board, row, col))
+				child = tree.addNode(NodeArena.TERMINATING, player, action, node, childKey, player ? 1 : -1);
+			else if(board.checkIfBoardIsFull())
+				child = tree.addNode(NodeArena.TERMINATING, player, action, node, childKey, 0);
+			else
+				child = tree.addNode(NodeArena.SELECT_PIECE, player, action, node, childKey, NodeArena.UNPROVEN);
+		}
+		tree.addVirtualLoss(child);
+		tree.setChild(node, index, child);
+
+		if(table != null)
+			table.put(key, child);
+
+		return child;
+	}
+	//the root child sequential halving samples next, NONE when it has not been published yet
+	private int sampleRootChild(NodeArena tree, int root, QuartoSequentialHalving halving){
+
+		int index = halving.next(System.nanoTime());
+		while(index == -1){
+
+			//every child's mean score for the root player
+			double[] values = new double[tree.getNumberOfChildSlots(root)];
+			for(int i = 0; i < values.length; i++){
+
+				int child = tree.getChild(root, i);
+				values[i] = child == NodeArena.NONE ? Double.NEGATIVE_INFINITY : evaluate(tree, child, tree.getPlayer(root), 1, 0, 0, 0, 0);
+			}
+			long now = System.nanoTime();
+			halving.nextRound(values, now);
+			index = halving.next(now);
+		}
+		return tree.getChild(root, index);
+	}
+	//returns NONE if no child has been published yet, the all-moves-as-first statistics are only used for selecting,
+	//when RAVE is on
+	private int bestChild(NodeArena tree, int node, double delta, boolean amaf){
+
+		int index = bestChildIndex(tree, node, delta, amaf, null);
+		if(index == -1)
+			return NodeArena.NONE;
+		return tree.getChild(node, index);
+	}
+	//the decision itself goes by the children's values without exploration, at a root under sequential halving by the
+	//candidates'; with RAVE the all-moves-as-first statistics still count, at small budgets they tell the best actions
+	//apart long before the children's own playouts do (QuartoBenchmark rave)
+	private int bestChildIndex(NodeArena tree, int node, double delta){
+		return bestChildIndex(tree, node, delta, tree.hasAmaf(), node == tree.getRoot() ? tree.getRootHalving() : null);
+	}
+	//child slots line up with the node's actions, so the index also gives the action that leads to the child
+	//with halving only its candidates are looked at
+	private int bestChildIndex(NodeArena tree, int node, double delta, boolean amaf, QuartoSequentialHalving halving){
+
+		int simulations = Math.max(1, tree.getN(node) + tree.getVirtualLosses(node));
+		boolean player = tree.getPlayer(node);
+		double maxValue = 0;
+		int maxIndex = -1;
+
+		for(int i = 0; i < tree.getNumberOfChildSlots(node); i++){
+
+			int child = tree.getChild(node, i);
+			if(child == NodeArena.NONE || halving != null && !halving.isCandidate(i))
+				continue;
+
+			int amafN = amaf ? tree.getChildAmafN(node, i) : 0;
+			int amafQ = amaf ? tree.getChildAmafQ(node, i) : 0;
+			double value = evaluate(tree, child, player, simulations, delta, amafN, amafQ, tree.getChildPrior(node, i));
+
+			if(maxIndex == -1 || value > maxValue){
+
+				maxValue = value;
+				maxIndex = i;
+			}			
+		}
+		return maxIndex;
+	}
+	protected Boolean isWin(QuartoBoard board, int row, int col){
+		return board.isWinningMove(row, col);
+	}
+	//player is the one who picks the child, amafN and amafQ are the all-moves-as-first statistics of the action leading to
+	//it (no playouts when RAVE is off) and prior the prior of that action
+	private double evaluate(NodeArena tree, int node, boolean player, int simulations, double delta, int amafN, int amafQ, double prior){
+
+		//a proven win is always picked and a proven loss only when every other child is one too
+		int win = player ? 1 : -1;
+		if(tree.getProven(node) == win)
+			return Double.POSITIVE_INFINITY;
+		if(tree.getProven(node) == -win)
+			return Double.NEGATIVE_INFINITY;
+
+		//virtual losses count as lost playouts for whoever picks the child
+		int virtualLosses = tree.getVirtualLosses(node);
+		int visits = tree.getN(node) + virtualLosses;
+		if(visits == 0)
+			return Double.POSITIVE_INFINITY;
+
+		//the root player's score is flipped for the opponent
+		int q = tree.getQ(node);
+		if(!player)
+			q = -q;
+		double value = getRaveValue((double)(q - virtualLosses) / visits, visits, amafN, player ? amafQ : -amafQ);
+		double squares = (double)(tree.getDecisive(node) + virtualLosses) / visits;
+		return this.selectionPolicy.getValue(value, squares, visits, simulations, prior, delta);
+	}
+	//value blended with the all-moves-as-first value amafQ / amafN for a child with visits playouts, value when there are none
+	private double getRaveValue(double value, int visits, int amafN, int amafQ){
+
+		if(amafN == 0)
+			return value;
+		double beta = Math.sqrt(this.raveEquivalence / (3.0 * visits + this.raveEquivalence));
+		return (1 - beta) * value + beta * amafQ / amafN;
+	}
+	//adds the results to every node on the path and takes back the virtual losses treePolicy put on it
+	private void backup(NodeArena tree, int[] path, int depth, int playouts, int totalScore, int decisivePlayouts){
+
+		for(int i = depth - 1; i >= 0; i--){
+
+			tree.addResults(path[i], playouts, totalScore, decisivePlayouts);
+			if(i > 0)
+				tree.removeVirtualLoss(path[i]);
+		}
+		//a proof goes up the path for as long as every parent gets proven by it
+		for(int i = depth - 1; i > 0 && tree.getProven(path[i]) != NodeArena.UNPROVEN; i--){
+
+			if(!prove(tree, path[i - 1], path[i]))
+				break;
+		}
+	}
+	//a node is won for its player as soon as one child is, otherwise it is proven once every child is, with the best
+	//of their values for its player; returns whether node is proven
+	private static boolean prove(NodeArena tree, int node, int child){
+
+		if(tree.getProven(node) != NodeArena.UNPROVEN)
+			return true;
+
+		boolean player = tree.getPlayer(node);
+		int win = player ? 1 : -1;
+		if(tree.getProven(child) == win){
+
+			tree.setProven(node, win);
+			return true;
+		}
+		if(tree.getNumberOfRemainingMoves(node) > 0)
+			return false;
+
+		int best = -win;
+		for(int i = 0; i < tree.getNumberOfChildSlots(node); i++){
+
+			//a claimed child that is not published yet is not proven either
+			int sibling = tree.getChild(node, i);
+			if(sibling == NodeArena.NONE || tree.getProven(sibling) == NodeArena.UNPROVEN)
+				return false;
+			best = player ? Math.max(best, tree.getProven(sibling)) : Math.min(best, tree.getProven(sibling));
+		}
+		tree.setProven(node, best);
+		return true;
+	}
+	private void printTree(String label, NodeArena tree){
+
+		int root = tree.getRoot();
+		System.out.println(label + ": " + tree.getN(root) + " playouts" + provenLabel(tree, root) + ", " + tree.getLiveNodes() + " nodes in " + tree.getAllocatedBytes() / (1024 * 1024) + " MB");
+		if(tree.getEvictions() > 0)
+			System.out.println("Evictions: " + tree.getEvictions() + ", " + tree.getReclaimedNodes() + " nodes reclaimed");
+		if(tree.getRootHalving() != null)
+			System.out.println("Sequential halving: " + tree.getRootHalving().getNumberOfCandidates() + " candidates left");
+		for(int i = 0; i < tree.getNumberOfChildSlots(root); i++){
+
+			int child = tree.getChild(root, i);
+			if(child == NodeArena.NONE)
+				continue;
+
+			System.out.println("  " + tree.getChildAction(root, i) + " n=" + tree.getN(child) + " q=" + tree.getQ(child) + provenLabel(tree, child));
+		}
+	}
+	private static String provenLabel(NodeArena tree, int node){
+		return tree.getProven(node) == NodeArena.UNPROVEN ? "" : " proven=" + tree.getProven(node);
+	}
+	//picks how many rollouts to play from the next leaf: a full batch per round of the pool,
+	//halved until one batch fits in a small slice of the time left so the deadline is kept
+	private int leafBatchSize(long endTime){
+
+		int parallelism = this.leafPool.getParallelism();
+		long budget = (endTime - System.nanoTime()) / LEAF_BATCH_TIME_SLICES;
+		int batch = this.maxLeafBatch;
+
+		while(batch > 1 && (long)((batch + parallelism - 1) / parallelism) * this.rolloutNanos > budget){
+			batch /= 2;
+		}
+		return batch;
+	}
+	//plays a leaf out several times, splitting the batch in halves across the fork-join pool
+	private class RolloutBatch extends RecursiveTask<Integer>{
+
+		private static final long serialVersionUID = 1L;
+		private final QuartoBoard board;
+		private final int piece;
+		private final boolean player1;
+		private final int size;
+		//rollouts that did not end in a draw, known once the batch is done
+		int decisive;
+
+		RolloutBatch(QuartoBoard board, int piece, boolean player1, int size){
+			this.board = board;
+			this.piece = piece;
+			this.player1 = player1;
+			this.size = size;
+		}
+		@Override
+		protected Integer compute(){
+
+			if(this.size == 1){
+
+				long start = System.nanoTime();
+				int score = defaultPolicy(LEAF_ROLLOUTS.get(), this.board, this.piece, this.player1);
+				//a rough running average is all the batch sizing needs
+				rolloutNanos = (rolloutNanos * 7 + (System.nanoTime() - start)) / 8;
+				leafRollouts.increment();
+				this.decisive = score != 0 ? 1 : 0;
+				return score;
+			}
+			RolloutBatch left = new RolloutBatch(this.board, this.piece, this.player1, this.size / 2);
+			left.fork();
+			RolloutBatch right = new RolloutBatch(this.board, this.piece, this.player1, this.size - this.size / 2);
+			int score = right.compute() + left.join();
+			this.decisive = left.decisive + right.decisive;
+			return score;
+		}
+	}
+	//every pool thread plays its rollouts with its own engine
+	private static final ThreadLocal<QuartoRollout> LEAF_ROLLOUTS = ThreadLocal.withInitial(QuartoRollout::new);
+
+	private int defaultPolicy(QuartoRollout rollout, QuartoBoard board, int piece, boolean player1){
+
+		//player1 is the player to act, when piece is -1 they choose one and the other player places it
+		rollout.setEpsilon(this.rolloutEpsilon);
+		rollout.setDepth(this.rolloutDepth);
+		return rollout.playGame(board, piece, player1);
+	}
+	//the first piece that does not win anywhere, a random one when they all do
+	protected int semiRandomPieceSelection(QuartoBoard board){
+
+		int safePieces = ~board.getWinningPieces() & ~board.getPiecesInPlayMask() & (int) ((1L << board.getNumberOfPieces()) - 1);
+		if(safePieces != 0)
+			return Integer.numberOfTrailingZeros(safePieces);
+		return board.chooseRandomPieceNotPlayed(100);
+	}
+	protected int[] randomMove(int pieceID, QuartoBoard board){
+
+		return board.chooseRandomPositionNotPlayed(100);
+	}
+	protected int randomPieceSelection(QuartoBoard board){
+		return board.chooseRandomPieceNotPlayed(100);
+	}
+	//the first cell where pieceID wins, a random one when there is none
+	protected int[] semiRandomMove(int pieceID, QuartoBoard board){
+
+		int winningCells = board.getWinningCells(pieceID);
+		if(winningCells != 0){
+
+			int cell = Integer.numberOfTrailingZeros(winningCells);
+			return new int[] {cell / board.getNumberOfColumns(), cell % board.getNumberOfColumns()};
+		}
+		return board.chooseRandomPositionNotPlayed(100);
+	}
+	public static int[] getPossiblePieces(QuartoBoard board){
+
+		int[] pieces = new int[board.getNumberOfPieces() - Integer.bitCount(board.getPiecesInPlayMask())];
+		int count = 0;
+
+		for(int i = 0; i < board.getNumberOfPieces(); i++){
+
+			if(!board.isPieceOnBoard(i)){
+
+				pieces[count++] = i;
+			}
+		}
+		return pieces;
+	}
+	//free cells as cell indexes (row * columns + column)
+	public static int[] getPossibleMoves(QuartoBoard board){
+
+		int cells = board.getNumberOfRows() * board.getNumberOfColumns();
+		int[] moves = new int[cells - Integer.bitCount(board.getOccupiedCellMask())];
+		int count = 0;
+
+		for(int cell = 0; cell < cells; cell++){
+
+			if((board.getOccupiedCellMask() & (1 << cell)) == 0){
+
+				moves[count++] = cell;
+			}
+		}
+		return moves;
+	}
+}
@@ -0,0 +1,682 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+//the search tree stored as parallel primitive arrays indexed by node number: millions of nodes make up a few hundred
+//arrays the garbage collector never has to trace, and no node carries a board, a node's position is rebuilt by replaying
+//the actions on its parent chain from the board at the root (getPosition)
+//the arrays grow in chunks of CHUNK_SIZE entries that never move, so threads searching one tree can add nodes while
+//others read them; the statistics and the expansion are only changed through VarHandles, so no node ever needs a lock,
+//and a node is filled in before it is published in its parent's child slot with a release write
+//with a node budget, the least visited subtrees are cut off once that many nodes are in use (evict), and new nodes and
+//child slots are taken from the ones freed before the arrays grow; search iterations run between startIteration and
+//endIteration, which keep an eviction from freeing anything an iteration is using
+//the arrays hold at most CAPACITY nodes and as many child slots, once either is nearly used up canGrow is false and the
+//search stops adding to the tree
+class NodeArena{
+
+	static final int NONE = -1;
+	//the first child slot of a node while one thread fills its slots in
+	static final int BUILDING = -2;
+	static final int UNPROVEN = Integer.MIN_VALUE;
+
+	//a SELECT_PIECE node's player hands over a piece, a SELECT_MOVE node's player places the piece that is its action,
+	//the action of any other node is the cell its parent's piece was placed on
+	static final int SELECT_PIECE = 0;
+	static final int SELECT_MOVE = 1;
+	static final int TERMINATING = 2;
+	//a node on the free list
+	private static final int FREE = 3;
+	private static final int KIND_MASK = 3;
+	private static final int PLAYER_BIT = 4;
+	//set while an eviction runs on the nodes it keeps
+	private static final int MARK_BIT = 8;
+	//an eviction frees at least this share of the budget, so it is not needed again for a while
+	private static final double EVICTION_SHARE = 0.25;
+	//visit counts are told apart up to this many, more visited nodes are only evicted together
+	private static final int EVICTION_VISITS = 1024;
+
+	private static final int CHUNK_SHIFT = 14;
+	private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+	private static final int MAXIMUM_CHUNKS = 1 << 12;
+	static final int CAPACITY = MAXIMUM_CHUNKS * CHUNK_SIZE;
+	//left free when canGrow turns false, for the node and the child slots every thread can still add in the iteration
+	//it has started
+	private static final int CAPACITY_RESERVE = CHUNK_SIZE;
+
+	private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+	private static final VarHandle CHUNKS = MethodHandles.arrayElementVarHandle(int[][].class);
+	private static final VarHandle SIZE, SLOTS_SIZE, LIVE_NODES, FREE_NODES;
+
+	static{
+		try{
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			SIZE = lookup.findVarHandle(NodeArena.class, "size", int.class);
+			SLOTS_SIZE = lookup.findVarHandle(NodeArena.class, "slotsSize", int.class);
+			LIVE_NODES = lookup.findVarHandle(NodeArena.class, "liveNodes", int.class);
+			FREE_NODES = lookup.findVarHandle(NodeArena.class, "freeNodes", int.class);
+		}catch(ReflectiveOperationException e){
+			throw new Error(e);
+		}
+	}
+
+	//one entry per node
+	private final byte[][] flags = new byte[MAXIMUM_CHUNKS][];
+	private final int[][] actions = new int[MAXIMUM_CHUNKS][];
+	private final int[][] parents = new int[MAXIMUM_CHUNKS][];
+	//Zobrist hash of the node's own position with the hand key of its piece in hand
+	private final long[][] keys = new long[MAXIMUM_CHUNKS][];
+	private final int[][] n = new int[MAXIMUM_CHUNKS][];
+	private final int[][] q = new int[MAXIMUM_CHUNKS][];
+	//playouts that did not end in a draw, which is also the sum of their squared scores
+	private final int[][] decisive = new int[MAXIMUM_CHUNKS][];
+	//threads currently searching below the node, each one counts as a loss until its result is backed up
+	private final int[][] virtualLosses = new int[MAXIMUM_CHUNKS][];
+	//the exact score from the point of view of the root player once the search has proven it
+	private final int[][] proven = new int[MAXIMUM_CHUNKS][];
+	//a node's child slots are childCounts entries from firstChildren, NONE until they are filled in,
+	//the actions not expanded yet are the first remaining of them
+	private final int[][] firstChildren = new int[MAXIMUM_CHUNKS][];
+	private final int[][] childCounts = new int[MAXIMUM_CHUNKS][];
+	private final int[][] remaining = new int[MAXIMUM_CHUNKS][];
+	private volatile int size;
+	private int nodeChunks;
+
+	//one entry per child slot: the action, its prior and the child it leads to, NONE until it is expanded
+	private final int[][] slotActions = new int[MAXIMUM_CHUNKS][];
+	private final float[][] slotPriors = new float[MAXIMUM_CHUNKS][];
+	private final int[][] slotChildren = new int[MAXIMUM_CHUNKS][];
+	//with RAVE, the all-moves-as-first statistics of every child slot: the playouts through the node in which the slot's
+	//action was taken at any point after it, in the tree or in the rollout, and the sum of their scores, flipped for the
+	//playouts in which the other player took it (MonteCarlo)
+	//only allocated for a tree that keeps them (setAmaf)
+	private final int[][] slotAmafN = new int[MAXIMUM_CHUNKS][];
+	private final int[][] slotAmafQ = new int[MAXIMUM_CHUNKS][];
+	private volatile int slotsSize;
+	private int slotChunks;
+	private int amafChunks;
+	private boolean amaf;
+
+	//0 lets the tree grow without a limit
+	private int nodeBudget;
+	private final StampedLock evictionLock = new StampedLock();
+	//nodes in use, size less the free ones
+	private volatile int liveNodes;
+	//the first free node, the next one is in its parent entry
+	private volatile int freeNodes = NONE;
+	//the first free block of child slots of every length, the next one is in the child of its first slot
+	private final int[] freeSlots = new int[Integer.SIZE + 1];
+	private int evictions;
+	private long reclaimedNodes;
+	//nodes with the threshold number of visits the running eviction still keeps
+	private int keptAtThreshold;
+
+	private final QuartoBoard rootBoard;
+	private int root = NONE;
+	//spends the running search's playouts at the root when sequential halving is used, null otherwise
+	private QuartoSequentialHalving rootHalving;
+
+	public NodeArena(QuartoBoard board){
+		this.rootBoard = new QuartoBoard(board);
+		Arrays.fill(this.freeSlots, NONE);
+	}
+	//drops every node and starts over at board, the chunks are kept for the next tree
+	public void reset(QuartoBoard board){
+
+		this.rootBoard.copyFrom(board);
+		this.root = NONE;
+		this.size = 0;
+		this.slotsSize = 0;
+		this.liveNodes = 0;
+		this.freeNodes = NONE;
+		Arrays.fill(this.freeSlots, NONE);
+		this.evictions = 0;
+		this.reclaimedNodes = 0;
+	}
+	//0 for no limit but the capacity, a larger budget is cut to what fits, the budget is kept by reset
+	public void setNodeBudget(int nodeBudget){
+		this.nodeBudget = Math.min(nodeBudget, CAPACITY - CAPACITY_RESERVE);
+	}
+	//false when the node or child slot arrays are nearly full, new nodes and child slots must not be added then
+	public boolean canGrow(){
+		return this.size <= CAPACITY - CAPACITY_RESERVE && this.slotsSize <= CAPACITY - CAPACITY_RESERVE;
+	}
+	public int getLiveNodes(){
+		return this.liveNodes;
+	}
+	//evictions since the last reset, and the nodes they freed
+	public int getEvictions(){
+		return this.evictions;
+	}
+	public long getReclaimedNodes(){
+		return this.reclaimedNodes;
+	}
+	public QuartoBoard getRootBoard(){
+		return this.rootBoard;
+	}
+	public boolean hasAmaf(){
+		return this.amaf;
+	}
+	//keeps the all-moves-as-first statistics of the child slots from now on, only while no search runs on the tree
+	public synchronized void setAmaf(boolean amaf){
+
+		this.amaf = amaf;
+		for(int chunk = 0; amaf && chunk < MAXIMUM_CHUNKS && this.slotChildren[chunk] != null; chunk++){
+			allocateAmafChunk(chunk);
+		}
+	}
+	public QuartoSequentialHalving getRootHalving(){
+		return this.rootHalving;
+	}
+	public void setRootHalving(QuartoSequentialHalving rootHalving){
+		this.rootHalving = rootHalving;
+	}
+	public int getRoot(){
+		return this.root;
+	}
+	public void setRoot(int root){
+		this.root = root;
+	}
+	public int size(){
+		return this.size;
+	}
+	//bytes held by the chunks allocated so far
+	public long getAllocatedBytes(){
+		return (long) this.nodeChunks * CHUNK_SIZE * (1 + 10 * Integer.BYTES + Long.BYTES) + (long) this.slotChunks * CHUNK_SIZE * 3 * Integer.BYTES
+				+ (long) this.amafChunks * CHUNK_SIZE * 2 * Integer.BYTES;
+	}
+	//adds a node with no child slots and no statistics, its parent publishes it with setChild
+	public int addNode(int kind, boolean player, int action, int parent, long key, int provenValue){
+
+		//nodes are only freed while no iteration runs, so the head never comes back to a node another thread is taking
+		int node;
+		do{
+			node = this.freeNodes;
+		}while(node != NONE && !FREE_NODES.compareAndSet(this, node, getParent(node)));
+
+		if(node == NONE){
+
+			node = (int) SIZE.getAndAdd(this, 1);
+			if(CHUNKS.getAcquire(this.n, node >>> CHUNK_SHIFT) == null)
+				allocateNodeChunk(node >>> CHUNK_SHIFT);
+		}
+		LIVE_NODES.getAndAdd(this, 1);
+
+		int chunk = node >>> CHUNK_SHIFT;
+		int i = node & CHUNK_MASK;
+		this.flags[chunk][i] = (byte) (kind | (player ? PLAYER_BIT : 0));
+		this.actions[chunk][i] = action;
+		this.parents[chunk][i] = parent;
+		this.keys[chunk][i] = key;
+		this.n[chunk][i] = 0;
+		this.q[chunk][i] = 0;
+		this.decisive[chunk][i] = 0;
+		this.virtualLosses[chunk][i] = 0;
+		this.proven[chunk][i] = provenValue;
+		this.firstChildren[chunk][i] = NONE;
+		this.childCounts[chunk][i] = 0;
+		this.remaining[chunk][i] = 0;
+		return node;
+	}
+	private synchronized void allocateNodeChunk(int chunk){
+
+		if(this.n[chunk] != null)
+			return;
+		this.flags[chunk] = new byte[CHUNK_SIZE];
+		this.actions[chunk] = new int[CHUNK_SIZE];
+		this.parents[chunk] = new int[CHUNK_SIZE];
+		this.keys[chunk] = new long[CHUNK_SIZE];
+		this.q[chunk] = new int[CHUNK_SIZE];
+		this.decisive[chunk] = new int[CHUNK_SIZE];
+		this.virtualLosses[chunk] = new int[CHUNK_SIZE];
+		this.proven[chunk] = new int[CHUNK_SIZE];
+		this.firstChildren[chunk] = new int[CHUNK_SIZE];
+		this.childCounts[chunk] = new int[CHUNK_SIZE];
+		this.remaining[chunk] = new int[CHUNK_SIZE];
+		this.nodeChunks++;
+		//n is checked first, so it is published last
+		CHUNKS.setRelease(this.n, chunk, new int[CHUNK_SIZE]);
+	}
+	//takes count consecutive child slots, a block never crosses into another chunk
+	private int addSlots(int count){
+
+		int block;
+		do{
+			block = (int) INTS.getVolatile(this.freeSlots, count);
+		}while(block != NONE && !INTS.compareAndSet(this.freeSlots, count, block, this.slotChildren[block >>> CHUNK_SHIFT][block & CHUNK_MASK]));
+		if(block != NONE)
+			return block;
+
+		int start;
+		int first;
+		do{
+			start = this.slotsSize;
+			first = start;
+			if((first & CHUNK_MASK) + count > CHUNK_SIZE)
+				first = (first | CHUNK_MASK) + 1;
+		}while(!SLOTS_SIZE.compareAndSet(this, start, first + count));
+
+		int chunk = first >>> CHUNK_SHIFT;
+		if(CHUNKS.getAcquire(this.slotChildren, chunk) == null)
+			allocateSlotChunk(chunk);
+		return first;
+	}
+	private synchronized void allocateSlotChunk(int chunk){
+
+		if(this.slotChildren[chunk] != null)
+			return;
+		this.slotActions[chunk] = new int[CHUNK_SIZE];
+		this.slotPriors[chunk] = new float[CHUNK_SIZE];
+		if(this.amaf)
+			allocateAmafChunk(chunk);
+		this.slotChunks++;
+		CHUNKS.setRelease(this.slotChildren, chunk, new int[CHUNK_SIZE]);
+	}
+	private void allocateAmafChunk(int chunk){
+
+		if(this.slotAmafN[chunk] != null)
+			return;
+		this.slotAmafN[chunk] = new int[CHUNK_SIZE];
+		this.slotAmafQ[chunk] = new int[CHUNK_SIZE];
+		this.amafChunks++;
+	}
+	public int getKind(int node){
+		return this.flags[node >>> CHUNK_SHIFT][node & CHUNK_MASK] & KIND_MASK;
+	}
+	//the player to act, after placing a piece the same player chooses the next one
+	public boolean getPlayer(int node){
+		return (this.flags[node >>> CHUNK_SHIFT][node & CHUNK_MASK] & PLAYER_BIT) != 0;
+	}
+	public int getAction(int node){
+		return this.actions[node >>> CHUNK_SHIFT][node & CHUNK_MASK];
+	}
+	//the piece the node's player places, -1 when they choose one
+	public int getPieceInHand(int node){
+		return getKind(node) == SELECT_MOVE ? getAction(node) : -1;
+	}
+	public int getParent(int node){
+		return this.parents[node >>> CHUNK_SHIFT][node & CHUNK_MASK];
+	}
+	public long getKey(int node){
+		return this.keys[node >>> CHUNK_SHIFT][node & CHUNK_MASK];
+	}
+	public int getN(int node){
+		return (int) INTS.getVolatile(this.n[node >>> CHUNK_SHIFT], node & CHUNK_MASK);
+	}
+	public int getQ(int node){
+		return (int) INTS.getVolatile(this.q[node >>> CHUNK_SHIFT], node & CHUNK_MASK);
+	}
+	public int getDecisive(int node){
+		return (int) INTS.getVolatile(this.decisive[node >>> CHUNK_SHIFT], node & CHUNK_MASK);
+	}
+	//adds a batch of playouts whose scores sum to totalScore, decisivePlayouts of them did not end in a draw
+	public void addResults(int node, int playouts, int totalScore, int decisivePlayouts){
+
+		INTS.getAndAdd(this.n[node >>> CHUNK_SHIFT], node & CHUNK_MASK, playouts);
+		INTS.getAndAdd(this.q[node >>> CHUNK_SHIFT], node & CHUNK_MASK, totalScore);
+		INTS.getAndAdd(this.decisive[node >>> CHUNK_SHIFT], node & CHUNK_MASK, decisivePlayouts);
+	}
+	public int getVirtualLosses(int node){
+		return (int) INTS.getVolatile(this.virtualLosses[node >>> CHUNK_SHIFT], node & CHUNK_MASK);
+	}
+	public void addVirtualLoss(int node){
+		INTS.getAndAdd(this.virtualLosses[node >>> CHUNK_SHIFT], node & CHUNK_MASK, 1);
+	}
+	public void removeVirtualLoss(int node){
+		INTS.getAndAdd(this.virtualLosses[node >>> CHUNK_SHIFT], node & CHUNK_MASK, -1);
+	}
+	public int getProven(int node){
+		return (int) INTS.getVolatile(this.proven[node >>> CHUNK_SHIFT], node & CHUNK_MASK);
+	}
+	//the value is exact, so threads proving the same node at once always write the same one
+	public void setProven(int node, int value){
+		INTS.setVolatile(this.proven[node >>> CHUNK_SHIFT], node & CHUNK_MASK, value);
+	}
+	public boolean hasChildren(int node){
+		return (int) INTS.getAcquire(this.firstChildren[node >>> CHUNK_SHIFT], node & CHUNK_MASK) >= 0;
+	}
+	//claims filling in the child slots of node for the calling thread, false when they are filled in or another thread has it
+	public boolean startChildren(int node){
+		return INTS.compareAndSet(this.firstChildren[node >>> CHUNK_SHIFT], node & CHUNK_MASK, NONE, BUILDING);
+	}
+	//gives node one child slot for every action in the bit mask, in ascending order, and publishes them
+	//priors are indexed by action, null gives every action the same
+	public void setChildren(int node, int actionMask, float[] priors){
+
+		int count = Integer.bitCount(actionMask);
+		int first = addSlots(count);
+		for(int i = 0, bits = actionMask; i < count; i++, bits &= bits - 1){
+
+			int action = Integer.numberOfTrailingZeros(bits);
+			this.slotActions[(first + i) >>> CHUNK_SHIFT][(first + i) & CHUNK_MASK] = action;
+			this.slotPriors[(first + i) >>> CHUNK_SHIFT][(first + i) & CHUNK_MASK] = priors != null ? priors[action] : 1f / count;
+			this.slotChildren[(first + i) >>> CHUNK_SHIFT][(first + i) & CHUNK_MASK] = NONE;
+			setSlotAmaf(first + i, 0, 0);
+		}
+		int chunk = node >>> CHUNK_SHIFT;
+		this.childCounts[chunk][node & CHUNK_MASK] = count;
+		this.remaining[chunk][node & CHUNK_MASK] = count;
+		INTS.setRelease(this.firstChildren[chunk], node & CHUNK_MASK, first);
+	}
+	//slots for every possible child, 0 until they are filled in
+	public int getNumberOfChildSlots(int node){
+		return hasChildren(node) ? this.childCounts[node >>> CHUNK_SHIFT][node & CHUNK_MASK] : 0;
+	}
+	public int getNumberOfRemainingMoves(int node){
+		return (int) INTS.getVolatile(this.remaining[node >>> CHUNK_SHIFT], node & CHUNK_MASK);
+	}
+	//claims the next unexpanded action for the calling thread, returns its slot or -1 if there are none left
+	public int claimRemainingMove(int node){
+
+		int[] chunk = this.remaining[node >>> CHUNK_SHIFT];
+		int remainingMoves;
+		do{
+			remainingMoves = (int) INTS.getVolatile(chunk, node & CHUNK_MASK);
+			if(remainingMoves == 0)
+				return -1;
+		}while(!INTS.compareAndSet(chunk, node & CHUNK_MASK, remainingMoves, remainingMoves - 1));
+
+		return remainingMoves - 1;
+	}
+	private int getSlot(int node, int index){
+		return this.firstChildren[node >>> CHUNK_SHIFT][node & CHUNK_MASK] + index;
+	}
+	public int getChildAction(int node, int index){
+		int slot = getSlot(node, index);
+		return this.slotActions[slot >>> CHUNK_SHIFT][slot & CHUNK_MASK];
+	}
+	public float getChildPrior(int node, int index){
+		int slot = getSlot(node, index);
+		return this.slotPriors[slot >>> CHUNK_SHIFT][slot & CHUNK_MASK];
+	}
+	public int getChildAmafN(int node, int index){
+		int slot = getSlot(node, index);
+		return (int) INTS.getOpaque(this.slotAmafN[slot >>> CHUNK_SHIFT], slot & CHUNK_MASK);
+	}
+	public int getChildAmafQ(int node, int index){
+		int slot = getSlot(node, index);
+		return (int) INTS.getOpaque(this.slotAmafQ[slot >>> CHUNK_SHIFT], slot & CHUNK_MASK);
+	}
+	//adds playouts whose scores sum to totalScore to the all-moves-as-first statistics of slot index
+	public void addChildAmafResults(int node, int index, int playouts, int totalScore){
+		int slot = getSlot(node, index);
+		INTS.getAndAdd(this.slotAmafN[slot >>> CHUNK_SHIFT], slot & CHUNK_MASK, playouts);
+		INTS.getAndAdd(this.slotAmafQ[slot >>> CHUNK_SHIFT], slot & CHUNK_MASK, totalScore);
+	}
+	//sets the all-moves-as-first statistics of a slot being filled in, when its chunk has them
+	private void setSlotAmaf(int slot, int amafN, int amafQ){
+
+		int chunk = slot >>> CHUNK_SHIFT;
+		if(this.slotAmafN[chunk] != null){
+
+			this.slotAmafN[chunk][slot & CHUNK_MASK] = amafN;
+			this.slotAmafQ[chunk][slot & CHUNK_MASK] = amafQ;
+		}
+	}
+	//NONE for an action that has not been expanded yet
+	public int getChild(int node, int index){
+		int slot = getSlot(node, index);
+		return (int) INTS.getAcquire(this.slotChildren[slot >>> CHUNK_SHIFT], slot & CHUNK_MASK);
+	}
+	//publishes child for the action in slot index, which must have been claimed with claimRemainingMove
+	public void setChild(int node, int index, int child){
+		int slot = getSlot(node, index);
+		INTS.setRelease(this.slotChildren[slot >>> CHUNK_SHIFT], slot & CHUNK_MASK, child);
+	}
+	//puts the position of node on board and returns its piece in hand, -1 when a piece has to be chosen
+	public int getPosition(int node, QuartoBoard board){
+
+		int parent = getParent(node);
+		if(parent == NONE){
+
+			board.copyFrom(this.rootBoard);
+			return getPieceInHand(node);
+		}
+		return applyAction(node, board, getPosition(parent, board));
+	}
+	//moves board from the position of node's parent, with piece in hand, to the position of node and returns its piece in hand
+	public int applyAction(int node, QuartoBoard board, int piece){
+
+		if(getKind(node) == SELECT_MOVE)
+			return getAction(node);
+		int cell = getAction(node);
+		board.insertPieceOnBoard(cell / board.getNumberOfColumns(), cell % board.getNumberOfColumns(), piece);
+		return -1;
+	}
+	//the exact key of the position action leads to from a node of the given kind whose position is on board with piece in hand
+	public static long getChildKey(int kind, QuartoBoard board, int piece, int action){
+
+		if(kind == SELECT_PIECE)
+			return board.getZobristHash() ^ QuartoBoard.getZobristHandKey(action);
+		return board.getZobristHash() ^ QuartoBoard.getZobristKey(action, piece) ^ QuartoBoard.getZobristHandKey(-1);
+	}
+	//starts a search iteration, which has to be ended by endIteration with the stamp returned
+	//evicts first when the budget is used up, table is the transposition table of the tree, if there is one
+	public long startIteration(TranspositionTable table){
+
+		if(this.nodeBudget <= 0)
+			return 0;
+		if(this.liveNodes >= this.nodeBudget)
+			evict(table);
+		return this.evictionLock.readLock();
+	}
+	public void endIteration(long stamp){
+
+		if(stamp != 0)
+			this.evictionLock.unlockRead(stamp);
+	}
+	//waits for the running iterations to end, then cuts off the subtrees below the least visited nodes until at least
+	//EVICTION_SHARE of the budget is free: their nodes and child slots go to the free lists, and the actions leading to
+	//them back to the unexpanded ones of the nodes that are kept, whose statistics stay as they are
+	private void evict(TranspositionTable table){
+
+		long stamp = this.evictionLock.writeLock();
+		try{
+			if(this.liveNodes < this.nodeBudget)
+				return;
+
+			//the least visited nodes go until enough do: every one with fewer than threshold visits and as many as it
+			//takes of the ones with threshold visits, the others of them are kept
+			int[] visits = new int[EVICTION_VISITS + 1];
+			for(int node = 0; node < this.size; node++){
+
+				if(getKind(node) != FREE)
+					visits[Math.min(getN(node), EVICTION_VISITS)]++;
+			}
+			int needed = this.liveNodes - (int) (this.nodeBudget * (1 - EVICTION_SHARE));
+			int threshold = 0;
+			while(threshold < EVICTION_VISITS && visits[threshold] < needed){
+				needed -= visits[threshold++];
+			}
+			this.keptAtThreshold = Math.max(0, visits[threshold] - needed);
+
+			//only tree edges are followed, so every node kept can still replay its position from the root
+			mark(this.root, threshold);
+			for(int node = 0; node < this.size; node++){
+
+				if((this.flags[node >>> CHUNK_SHIFT][node & CHUNK_MASK] & MARK_BIT) != 0)
+					unlinkFreedChildren(node);
+			}
+			int freed = 0;
+			for(int node = 0; node < this.size; node++){
+
+				int chunk = node >>> CHUNK_SHIFT;
+				int i = node & CHUNK_MASK;
+				if((this.flags[chunk][i] & MARK_BIT) != 0){
+					this.flags[chunk][i] &= ~MARK_BIT;
+				}else if(getKind(node) != FREE){
+
+					free(node);
+					freed++;
+				}
+			}
+			this.liveNodes -= freed;
+			this.evictions++;
+			this.reclaimedNodes += freed;
+			if(table != null)
+				table.removeFreeNodes();
+		}finally{
+			this.evictionLock.unlockWrite(stamp);
+		}
+	}
+	//marks node and, through their tree edges, the children evict keeps and their subtrees
+	private void mark(int node, int threshold){
+
+		this.flags[node >>> CHUNK_SHIFT][node & CHUNK_MASK] |= MARK_BIT;
+		for(int i = getNumberOfRemainingMoves(node); i < getNumberOfChildSlots(node); i++){
+
+			int child = getChild(node, i);
+			if(child == NONE || getParent(child) != node)
+				continue;
+			int childVisits = Math.min(getN(child), EVICTION_VISITS);
+			if(childVisits > threshold || childVisits == threshold && this.keptAtThreshold-- > 0)
+				mark(child, threshold);
+		}
+	}
+	//puts the actions of a marked node whose child is not marked back among its unexpanded ones
+	private void unlinkFreedChildren(int node){
+
+		int chunk = node >>> CHUNK_SHIFT;
+		for(int i = this.remaining[chunk][node & CHUNK_MASK]; i < getNumberOfChildSlots(node); i++){
+
+			//a claimed action that was never published stays claimed
+			int child = getChild(node, i);
+			if(child != NONE && (this.flags[child >>> CHUNK_SHIFT][child & CHUNK_MASK] & MARK_BIT) == 0)
+				unexpand(node, i);
+		}
+	}
+	//swaps the expanded slot index with the first expanded one, which becomes the last unexpanded one
+	private void unexpand(int node, int index){
+
+		int unexpanded = this.remaining[node >>> CHUNK_SHIFT][node & CHUNK_MASK]++;
+		int action = getChildAction(node, index);
+		float prior = getChildPrior(node, index);
+		int slot = getSlot(node, index);
+		int unexpandedSlot = getSlot(node, unexpanded);
+		//the all-moves-as-first statistics belong to the action, so they move with it
+		boolean amafSlots = this.slotAmafN[slot >>> CHUNK_SHIFT] != null;
+		int amafN = amafSlots ? getChildAmafN(node, index) : 0;
+		int amafQ = amafSlots ? getChildAmafQ(node, index) : 0;
+		this.slotActions[slot >>> CHUNK_SHIFT][slot & CHUNK_MASK] = getChildAction(node, unexpanded);
+		this.slotPriors[slot >>> CHUNK_SHIFT][slot & CHUNK_MASK] = getChildPrior(node, unexpanded);
+		this.slotChildren[slot >>> CHUNK_SHIFT][slot & CHUNK_MASK] = getChild(node, unexpanded);
+		if(amafSlots)
+			setSlotAmaf(slot, getChildAmafN(node, unexpanded), getChildAmafQ(node, unexpanded));
+		this.slotActions[unexpandedSlot >>> CHUNK_SHIFT][unexpandedSlot & CHUNK_MASK] = action;
+		this.slotPriors[unexpandedSlot >>> CHUNK_SHIFT][unexpandedSlot & CHUNK_MASK] = prior;
+		this.slotChildren[unexpandedSlot >>> CHUNK_SHIFT][unexpandedSlot & CHUNK_MASK] = NONE;
+		setSlotAmaf(unexpandedSlot, amafN, amafQ);
+	}
+	//puts node and its child slots on the free lists, only while the write lock is held
+	private void free(int node){
+
+		int chunk = node >>> CHUNK_SHIFT;
+		int i = node & CHUNK_MASK;
+		int count = this.childCounts[chunk][i];
+		if(this.firstChildren[chunk][i] >= 0 && count > 0){
+
+			int first = this.firstChildren[chunk][i];
+			this.slotChildren[first >>> CHUNK_SHIFT][first & CHUNK_MASK] = this.freeSlots[count];
+			this.freeSlots[count] = first;
+		}
+		this.flags[chunk][i] = FREE;
+		this.parents[chunk][i] = this.freeNodes;
+		this.freeNodes = node;
+	}
+	public boolean isFree(int node){
+		return getKind(node) == FREE;
+	}
+	//copies the subtree below node in from into this arena, emptied and rooted at board, which must be node's position
+	//a child reached through a transposition is kept when its own position is part of the subtree as well, otherwise
+	//its action goes back to the unexpanded ones, since no node is left that it could be replayed from
+	//every node kept is put in table with the key nodeKey gives it, when there is a table
+	public void copySubtree(NodeArena from, int node, QuartoBoard board, TranspositionTable table, KeyFunction nodeKey){
+
+		this.reset(board);
+		int[] copies = new int[from.size()];
+		Arrays.fill(copies, NONE);
+		QuartoBoard scratchBoard = new QuartoBoard(board);
+		this.root = copyNode(from, node, NONE, from.getAction(node), scratchBoard, from.getPieceInHand(node), copies, table, nodeKey);
+
+		//the transposed children are linked now that every copy is known
+		for(int copy = 0; copy < this.size; copy++){
+
+			int chunk = copy >>> CHUNK_SHIFT;
+			int count = getNumberOfChildSlots(copy);
+			for(int i = this.remaining[chunk][copy & CHUNK_MASK]; i < count; i++){
+
+				//NONE is a claimed action that was never published, it stays claimed
+				int child = getChild(copy, i);
+				if(child >= NONE)
+					continue;
+				child = copies[-3 - child];
+				if(child != NONE){
+
+					setChild(copy, i, child);
+					continue;
+				}
+				//the first expanded slot it swaps places with has been linked already
+				unexpand(copy, i);
+			}
+		}
+	}
+	//board holds node's position with piece in hand, a transposed child is left in its slot as -3 - its number in from
+	//action is the one of parent's slot, which can differ from node's own when node was reached by another move order
+	private int copyNode(NodeArena from, int node, int parent, int action, QuartoBoard board, int piece, int[] copies, TranspositionTable table, KeyFunction nodeKey){
+
+		int kind = from.getKind(node);
+		int copy = addNode(kind, from.getPlayer(node), action, parent, from.getKey(node), from.getProven(node));
+		addResults(copy, from.getN(node), from.getQ(node), from.getDecisive(node));
+		copies[node] = copy;
+		if(table != null)
+			table.put(nodeKey.getKey(board, piece), copy);
+		if(!from.hasChildren(node))
+			return copy;
+
+		int count = from.getNumberOfChildSlots(node);
+		int first = addSlots(count);
+		for(int i = 0; i < count; i++){
+
+			this.slotActions[(first + i) >>> CHUNK_SHIFT][(first + i) & CHUNK_MASK] = from.getChildAction(node, i);
+			this.slotPriors[(first + i) >>> CHUNK_SHIFT][(first + i) & CHUNK_MASK] = from.getChildPrior(node, i);
+			this.slotChildren[(first + i) >>> CHUNK_SHIFT][(first + i) & CHUNK_MASK] = NONE;
+			if(from.hasAmaf())
+				setSlotAmaf(first + i, from.getChildAmafN(node, i), from.getChildAmafQ(node, i));
+			else
+				setSlotAmaf(first + i, 0, 0);
+		}
+		int chunk = copy >>> CHUNK_SHIFT;
+		this.childCounts[chunk][copy & CHUNK_MASK] = count;
+		this.remaining[chunk][copy & CHUNK_MASK] = from.getNumberOfRemainingMoves(node);
+		this.firstChildren[chunk][copy & CHUNK_MASK] = first;
+
+		for(int i = from.getNumberOfRemainingMoves(node); i < count; i++){
+
+			int child = from.getChild(node, i);
+			int childAction = from.getChildAction(node, i);
+			if(child == NONE){
+				continue;
+			}else if(copies[child] != NONE){
+				setChild(copy, i, copies[child]);
+			}else if(from.getKey(child) != getChildKey(kind, board, piece, childAction)){
+				setChild(copy, i, -3 - child);
+			}else if(kind == SELECT_PIECE){
+				setChild(copy, i, copyNode(from, child, copy, childAction, board, childAction, copies, table, nodeKey));
+			}else{
+
+				int row = childAction / board.getNumberOfColumns();
+				int column = childAction % board.getNumberOfColumns();
+				board.insertPieceOnBoard(row, column, piece);
+				setChild(copy, i, copyNode(from, child, copy, childAction, board, -1, copies, table, nodeKey));
+				board.removePieceFromBoard(row, column);
+			}
+		}
+		return copy;
+	}
+	//the transposition table key of a position, which copySubtree leaves to the search
+	interface KeyFunction{
+		long getKey(QuartoBoard board, int piece);
+	}
+}
@@ -0,0 +1,651 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+
+//command line checks and measurements for the search code
+//usage: java QuartoBenchmark <mode> [stateFileName]
+//  rollouts - random rollouts per second from the position
+//  stress   - many threads on one shared tree, then checks that every node's statistics add up, without and with a node budget
+//  transpositions - the move chosen at growing time limits with and without a transposition table
+//  solver   - time the endgame solver takes on random positions with fewer and fewer empty cells
+//  policy   - rollouts per second and match results against random rollouts for a range of rollout epsilons
+//  tree     - search iterations per second and the memory the search tree takes per node, without and with a node budget
+//  rave     - best placements found at growing playout budgets with and without RAVE
+//  selection - best placements found at growing time limits with every selection policy, with and without sequential halving
+//  truncation - rollouts per second, best placements found and match results against full rollouts for a range of rollout depths
+public class QuartoBenchmark {
+
+	private static final int NUMBER_OF_ROWS = 5;
+	private static final int NUMBER_OF_COLUMNS = 5;
+	private static final int NUMBER_OF_PIECES = 32;
+
+	//small enough that the searches evict many times
+	private static final int STRESS_NODE_BUDGET = 20000;
+	private static final int TREE_NODE_BUDGET = 100000;
+
+	public static void main(String[] args) {
+
+		String mode = "rollouts";
+		String stateFileName = null;
+		if(args.length > 0) {
+			mode = args[0];
+		}
+		if(args.length > 1) {
+			stateFileName = args[1];
+		}
+		QuartoBoard board = new QuartoBoard(NUMBER_OF_ROWS, NUMBER_OF_COLUMNS, NUMBER_OF_PIECES, stateFileName);
+
+		if(mode.equals("rollouts")) {
+			rollouts(board);
+		} else if(mode.equals("stress")) {
+			stress(board, 0);
+			stress(board, STRESS_NODE_BUDGET);
+		} else if(mode.equals("transpositions")) {
+			transpositions(board);
+		} else if(mode.equals("solver")) {
+			solver();
+		} else if(mode.equals("policy")) {
+			policy(board);
+		} else if(mode.equals("rave")) {
+			rave();
+		} else if(mode.equals("selection")) {
+			selection();
+		} else if(mode.equals("truncation")) {
+			truncation(board);
+		} else if(mode.equals("tree")) {
+			tree(board, 0);
+			tree(board, TREE_NODE_BUDGET);
+		} else {
+			System.out.println("Unknown mode: " + mode);
+			System.exit(-1);
+		}
+	}
+
+	private static void rollouts(QuartoBoard board) {
+
+		QuartoRollout rollout = new QuartoRollout();
+		long endTime = System.currentTimeMillis() + 5000;
+		int wins = 0;
+		while(System.currentTimeMillis() < endTime) {
+			if(rollout.playGame(board, -1, true) == 1) {
+				wins++;
+			}
+		}
+		System.out.println("Rollouts: " + rollout.getRollouts() + " (" + (int) rollout.getRolloutsPerSecond() + " per second), first player wins " + wins);
+	}
+
+	//for each epsilon: rollouts per second, how often a search picks a placement the solver proves best on positions
+	//where the placements differ, and a match against searches with random rollouts (epsilon 1) at the same time
+	//per decision, taking both sides equally often, so fewer but better rollouts are weighed against more random ones
+	private static void policy(QuartoBoard board) {
+
+		double[] epsilons = new double[] {1, 0.5, 0.25, 0.1, 0};
+		int games = 20;
+		int millis = 2;
+
+		int numberOfPositions = 30;
+		QuartoBoard[] positions = new QuartoBoard[numberOfPositions];
+		int[] pieces = new int[numberOfPositions];
+		int[][] cellValues = new int[numberOfPositions][];
+		solvePositions(positions, pieces, cellValues);
+
+		PrintStream console = System.out;
+		PrintStream quiet = new PrintStream(OutputStream.nullOutputStream());
+		for(double epsilon : epsilons) {
+
+			QuartoRollout rollout = new QuartoRollout();
+			rollout.setEpsilon(epsilon);
+			long endTime = System.currentTimeMillis() + 2000;
+			while(System.currentTimeMillis() < endTime) {
+				rollout.playGame(board, -1, true);
+			}
+
+			int best = 0;
+			System.setOut(quiet);
+			for(int i = 0; i < numberOfPositions; i++) {
+				MonteCarlo mc = new MonteCarlo(millis, 1 / Math.sqrt(2), true);
+				mc.setRolloutEpsilon(epsilon);
+				int cell = mc.UCTSearch(positions[i], pieces[i]);
+				if(cellValues[i][cell] == cellValues[i][NUMBER_OF_ROWS * NUMBER_OF_COLUMNS]) {
+					best++;
+				}
+			}
+			System.setOut(console);
+
+			int wins = 0;
+			int draws = 0;
+			long iterations = 0;
+			long decisions = 0;
+			for(int game = 0; game < games; game++) {
+
+				MonteCarlo tested = new MonteCarlo(millis, 1 / Math.sqrt(2), true);
+				tested.setRolloutEpsilon(epsilon);
+				MonteCarlo baseline = new MonteCarlo(millis, 1 / Math.sqrt(2), true);
+				boolean testedFirst = game % 2 == 0;
+				long[] statistics = new long[2];
+
+				System.setOut(quiet);
+				int result = playMatchGame(testedFirst ? tested : baseline, testedFirst ? baseline : tested, testedFirst ? 0 : 1, statistics);
+				System.setOut(console);
+
+				if(result == 0) {
+					draws++;
+				} else if((result == 1) == testedFirst) {
+					wins++;
+				}
+				iterations += statistics[0];
+				decisions += statistics[1];
+			}
+			System.out.println("epsilon " + epsilon + ": " + (int) rollout.getRolloutsPerSecond() + " rollouts per second, " + (decisions == 0 ? 0 : iterations / decisions)
+					+ " playouts per searched decision at " + millis + " ms, best placement in " + best + "/" + numberOfPositions
+					+ ", against epsilon 1: " + wins + " wins, " + draws + " draws, " + (games - wins - draws) + " losses");
+		}
+	}
+
+	//fills the arrays with random positions with 9 empty cells, a piece to place that does not win at once and
+	//the solved values of placing it (solvePlacements), the same ones on every run
+	private static void solvePositions(QuartoBoard[] positions, int[] pieces, int[][] cellValues) {
+
+		SplittableRandom random = new SplittableRandom(1);
+		QuartoSolver solver = new QuartoSolver(1 << 22);
+		for(int i = 0; i < positions.length; i++) {
+			do {
+				positions[i] = randomPosition(random, NUMBER_OF_ROWS * NUMBER_OF_COLUMNS - 9);
+				pieces[i] = safePiece(random, positions[i]);
+				cellValues[i] = solvePlacements(solver, positions[i], pieces[i]);
+			} while(cellValues[i] == null);
+		}
+		System.out.println(positions.length + " positions with 9 empty cells solved");
+	}
+
+	//every solved position is searched with each playout budget and each RAVE equivalence (0 is plain UCT), for random and
+	//for the agent's rollouts; budgets rather than time limits so RAVE's slower iterations do not blur the comparison
+	//the budget it takes to find as many best placements as plain UCT at the largest budget tells what RAVE saves
+	private static void rave() {
+
+		double[] epsilons = new double[] {1, 0.1};
+		int[] equivalences = new int[] {0, 30, 300};
+		int[] budgets = new int[] {64, 128, 256, 512, 1024};
+		//only there so a search cannot hang, the budgets end them long before
+		int millis = 10000;
+		int runs = 8;
+
+		int numberOfPositions = 30;
+		QuartoBoard[] positions = new QuartoBoard[numberOfPositions];
+		int[] pieces = new int[numberOfPositions];
+		int[][] cellValues = new int[numberOfPositions][];
+		solvePositions(positions, pieces, cellValues);
+		int decisions = runs * numberOfPositions;
+
+		for(double epsilon : epsilons) {
+
+			int[][] best = new int[equivalences.length][budgets.length];
+			for(int j = 0; j < budgets.length; j++) {
+				for(int i = 0; i < equivalences.length; i++) {
+
+					long[] playouts = new long[1];
+					for(int run = 0; run < runs; run++) {
+						best[i][j] += searchSolvedPositions(positions, pieces, cellValues, millis, rave(epsilon, equivalences[i], budgets[j]), playouts);
+					}
+					System.out.println("epsilon " + epsilon + ", rave " + equivalences[i] + " with " + budgets[j] + " playouts: best placement in " + best[i][j] + "/" + decisions
+							+ ", " + playouts[0] / decisions + " playouts per decision");
+				}
+			}
+
+			int target = best[0][budgets.length - 1];
+			for(int i = 0; i < equivalences.length; i++) {
+
+				int j = 0;
+				while(j < budgets.length && best[i][j] < target) {
+					j++;
+				}
+				if(j == budgets.length) {
+					System.out.println("epsilon " + epsilon + ", rave " + equivalences[i] + ": never finds " + target + " best placements");
+				} else {
+					System.out.println("epsilon " + epsilon + ", rave " + equivalences[i] + ": " + target + " best placements first reached with " + budgets[j] + " playouts per decision");
+				}
+			}
+		}
+	}
+
+	private static Consumer<MonteCarlo> rave(double epsilon, int raveEquivalence, int playoutLimit) {
+		return mc -> {
+			mc.setRolloutEpsilon(epsilon);
+			mc.setRave(raveEquivalence);
+			mc.setPlayoutLimit(playoutLimit);
+		};
+	}
+
+	//every solved position is searched at each time limit with each selection policy, alone and with sequential halving at
+	//the root, for random and for the agent's rollouts; the settings take turns at every limit so they run equally warmed up
+	private static void selection() {
+
+		double[] epsilons = new double[] {1, 0.1};
+		QuartoSelectionPolicy[] policies = new QuartoSelectionPolicy[] {QuartoSelectionPolicy.UCB1, QuartoSelectionPolicy.UCB1_TUNED, QuartoSelectionPolicy.PUCT};
+		int[] millis = new int[] {1, 2, 4, 8};
+		int runs = 4;
+
+		int numberOfPositions = 30;
+		QuartoBoard[] positions = new QuartoBoard[numberOfPositions];
+		int[] pieces = new int[numberOfPositions];
+		int[][] cellValues = new int[numberOfPositions][];
+		solvePositions(positions, pieces, cellValues);
+		int decisions = runs * numberOfPositions;
+		int settings = 2 * policies.length;
+
+		for(double epsilon : epsilons) {
+
+			int[][] best = new int[settings][millis.length];
+			for(int i = 0; i < settings; i++) {
+				searchSolvedPositions(positions, pieces, cellValues, millis[0], selection(epsilon, policies[i / 2], i % 2 == 1), new long[1]);
+			}
+			for(int j = 0; j < millis.length; j++) {
+				for(int i = 0; i < settings; i++) {
+
+					long[] playouts = new long[1];
+					for(int run = 0; run < runs; run++) {
+						best[i][j] += searchSolvedPositions(positions, pieces, cellValues, millis[j], selection(epsilon, policies[i / 2], i % 2 == 1), playouts);
+					}
+					System.out.println("epsilon " + epsilon + ", " + policies[i / 2] + (i % 2 == 1 ? " with halving" : "") + " at " + millis[j] + " ms: best placement in "
+							+ best[i][j] + "/" + decisions + ", " + playouts[0] / decisions + " playouts per decision");
+				}
+			}
+
+			for(int i = 0; i < settings; i++) {
+
+				StringBuilder line = new StringBuilder("epsilon " + epsilon + ", " + policies[i / 2] + (i % 2 == 1 ? " with halving" : "") + ": best placements");
+				for(int j = 0; j < millis.length; j++) {
+					line.append(" " + best[i][j] + " at " + millis[j] + " ms" + (j < millis.length - 1 ? "," : ""));
+				}
+				System.out.println(line + " of " + decisions);
+			}
+		}
+	}
+
+	private static Consumer<MonteCarlo> selection(double epsilon, QuartoSelectionPolicy policy, boolean sequentialHalving) {
+		return mc -> {
+			mc.setRolloutEpsilon(epsilon);
+			mc.setSelectionPolicy(policy);
+			mc.setSequentialHalving(sequentialHalving);
+		};
+	}
+
+	//rollouts cut short at every depth (0 plays them to the end) and scored by QuartoEvaluator, for random and for the
+	//agent's rollouts: how many more of them run per second, how often the searches find the solved best placement, where
+	//the settings take turns at every limit so they run equally warmed up, and how they do in games against full rollouts
+	private static void truncation(QuartoBoard board) {
+
+		double[] epsilons = new double[] {1, 0.1};
+		int[] depths = new int[] {0, 1, 2, 4, 8};
+		int[] millis = new int[] {1, 2, 4, 8};
+		int runs = 4;
+		int games = 20;
+		int gameMillis = 2;
+
+		int numberOfPositions = 30;
+		QuartoBoard[] positions = new QuartoBoard[numberOfPositions];
+		int[] pieces = new int[numberOfPositions];
+		int[][] cellValues = new int[numberOfPositions][];
+		solvePositions(positions, pieces, cellValues);
+		int decisions = runs * numberOfPositions;
+
+		PrintStream console = System.out;
+		PrintStream quiet = new PrintStream(OutputStream.nullOutputStream());
+		for(double epsilon : epsilons) {
+
+			for(int depth : depths) {
+
+				QuartoRollout rollout = new QuartoRollout();
+				rollout.setEpsilon(epsilon);
+				rollout.setDepth(depth);
+				long endTime = System.currentTimeMillis() + 2000;
+				while(System.currentTimeMillis() < endTime) {
+					rollout.playGame(board, -1, true);
+				}
+				System.out.println("epsilon " + epsilon + ", depth " + depth + ": " + (int) rollout.getRolloutsPerSecond() + " rollouts per second");
+			}
+
+			int[][] best = new int[depths.length][millis.length];
+			for(int depth : depths) {
+				searchSolvedPositions(positions, pieces, cellValues, millis[0], truncation(epsilon, depth), new long[1]);
+			}
+			for(int j = 0; j < millis.length; j++) {
+				for(int i = 0; i < depths.length; i++) {
+
+					long[] playouts = new long[1];
+					for(int run = 0; run < runs; run++) {
+						best[i][j] += searchSolvedPositions(positions, pieces, cellValues, millis[j], truncation(epsilon, depths[i]), playouts);
+					}
+					System.out.println("epsilon " + epsilon + ", depth " + depths[i] + " at " + millis[j] + " ms: best placement in " + best[i][j] + "/" + decisions
+							+ ", " + playouts[0] / decisions + " playouts per decision");
+				}
+			}
+
+			for(int i = 0; i < depths.length; i++) {
+
+				StringBuilder line = new StringBuilder("epsilon " + epsilon + ", depth " + depths[i] + ": best placements");
+				for(int j = 0; j < millis.length; j++) {
+					line.append(" " + best[i][j] + " at " + millis[j] + " ms" + (j < millis.length - 1 ? "," : ""));
+				}
+				System.out.println(line + " of " + decisions);
+			}
+
+			for(int i = 1; i < depths.length; i++) {
+
+				int wins = 0;
+				int draws = 0;
+				for(int game = 0; game < games; game++) {
+
+					MonteCarlo tested = new MonteCarlo(gameMillis, 1 / Math.sqrt(2), true);
+					truncation(epsilon, depths[i]).accept(tested);
+					MonteCarlo baseline = new MonteCarlo(gameMillis, 1 / Math.sqrt(2), true);
+					baseline.setRolloutEpsilon(epsilon);
+					boolean testedFirst = game % 2 == 0;
+
+					System.setOut(quiet);
+					int result = playMatchGame(testedFirst ? tested : baseline, testedFirst ? baseline : tested, testedFirst ? 0 : 1, new long[2]);
+					System.setOut(console);
+
+					if(result == 0) {
+						draws++;
+					} else if((result == 1) == testedFirst) {
+						wins++;
+					}
+				}
+				System.out.println("epsilon " + epsilon + ", depth " + depths[i] + " against full rollouts at " + gameMillis + " ms: " + wins + " wins, " + draws + " draws, "
+						+ (games - wins - draws) + " losses");
+			}
+		}
+	}
+
+	private static Consumer<MonteCarlo> truncation(double epsilon, int depth) {
+		return mc -> {
+			mc.setRolloutEpsilon(epsilon);
+			mc.setRolloutDepth(depth);
+		};
+	}
+
+	//searches every position once with a new search set up by settings, returns how often the best placement was found
+	//and adds the playouts to playouts[0]
+	private static int searchSolvedPositions(QuartoBoard[] positions, int[] pieces, int[][] cellValues, int millis, Consumer<MonteCarlo> settings, long[] playouts) {
+
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		int best = 0;
+		for(int i = 0; i < positions.length; i++) {
+
+			MonteCarlo mc = new MonteCarlo(millis, 1 / Math.sqrt(2), true);
+			settings.accept(mc);
+			int cell = mc.UCTSearch(positions[i], pieces[i]);
+			if(cellValues[i][cell] == cellValues[i][NUMBER_OF_ROWS * NUMBER_OF_COLUMNS]) {
+				best++;
+			}
+			playouts[0] += mc.getLastIterations();
+		}
+		System.setOut(console);
+		return best;
+	}
+
+	//the solved value of placing piece on every cell for the player placing it (Integer.MIN_VALUE for occupied cells),
+	//with the best value at the end, null when a cell could not be solved, the piece wins somewhere or every cell is as good
+	private static int[] solvePlacements(QuartoSolver solver, QuartoBoard position, int piece) {
+
+		int cells = NUMBER_OF_ROWS * NUMBER_OF_COLUMNS;
+		if(position.getWinningCells(piece) != 0) {
+			return null;
+		}
+		int[] values = new int[cells + 1];
+		Arrays.fill(values, Integer.MIN_VALUE);
+		int worst = Integer.MAX_VALUE;
+		for(int cell = 0; cell < cells; cell++) {
+			if(position.isSpaceTaken(cell / NUMBER_OF_COLUMNS, cell % NUMBER_OF_COLUMNS)) {
+				continue;
+			}
+			position.insertPieceOnBoard(cell / NUMBER_OF_COLUMNS, cell % NUMBER_OF_COLUMNS, piece);
+			//the placing player also chooses the next piece, so the value carries over
+			boolean solved = solver.solve(position, -1, System.nanoTime() + 20000 * 1000000L);
+			position.removePieceFromBoard(cell / NUMBER_OF_COLUMNS, cell % NUMBER_OF_COLUMNS);
+			if(!solved) {
+				return null;
+			}
+			values[cell] = solver.getValue();
+			values[cells] = Math.max(values[cells], values[cell]);
+			worst = Math.min(worst, values[cell]);
+		}
+		return worst == values[cells] ? null : values;
+	}
+
+	//plays a game from the empty board where first hands over the first piece, returns 1 when first wins, -1 when second does and 0 for a draw
+	//adds the playouts of the searched decisions of the player with index measured (0 for first) to statistics[0] and their number to statistics[1]
+	private static int playMatchGame(MonteCarlo first, MonteCarlo second, int measured, long[] statistics) {
+
+		QuartoBoard board = new QuartoBoard(NUMBER_OF_ROWS, NUMBER_OF_COLUMNS, NUMBER_OF_PIECES, null);
+		MonteCarlo[] players = new MonteCarlo[] {first, second};
+		int chooser = 0;
+		int piece = decide(players[chooser], board, null, chooser == measured, statistics);
+		while(true) {
+
+			int placer = 1 - chooser;
+			int cell = decide(players[placer], board, piece, placer == measured, statistics);
+			board.insertPieceOnBoard(cell / NUMBER_OF_COLUMNS, cell % NUMBER_OF_COLUMNS, piece);
+			if(board.isWinningMove(cell / NUMBER_OF_COLUMNS, cell % NUMBER_OF_COLUMNS)) {
+				return placer == 0 ? 1 : -1;
+			}
+			if(board.checkIfBoardIsFull()) {
+				return 0;
+			}
+			piece = decide(players[placer], board, null, placer == measured, statistics);
+			chooser = placer;
+		}
+	}
+
+	private static int decide(MonteCarlo player, QuartoBoard board, Integer piece, boolean measured, long[] statistics) {
+
+		int action = player.UCTSearch(board, piece);
+		if(measured && player.getLastIterations() > 0) {
+			statistics[0] += player.getLastIterations();
+			statistics[1]++;
+		}
+		return action;
+	}
+
+	//a decision is stable once the chosen move stops changing as the time limit grows
+	private static void transpositions(QuartoBoard board) {
+
+		int[] timeLimits = new int[] {125, 250, 500, 1000, 2000, 4000};
+		for(int tableSize : new int[] {0, 1 << 18}) {
+			StringBuilder moves = new StringBuilder();
+			for(int timeLimit : timeLimits) {
+				MonteCarlo mc = new MonteCarlo(timeLimit, 1 / Math.sqrt(2), false);
+				mc.setTranspositionTableSize(tableSize);
+				int move = mc.UCTSearch(board, 0);
+				moves.append(timeLimit + "ms: " + move + " (" + mc.getLastIterations() + " playouts)  ");
+			}
+			System.out.println("table size " + tableSize + ": " + moves);
+		}
+	}
+
+	//the largest number of empty cells the solver proves within a turn is the threshold for switching to it
+	private static void solver() {
+
+		SplittableRandom random = new SplittableRandom(1);
+		QuartoSolver solver = new QuartoSolver(1 << 22);
+		int positions = 5;
+
+		for(int emptyCells = 8; emptyCells <= 16; emptyCells++) {
+
+			long[] millis = new long[positions];
+			int solved = 0;
+			StringBuilder values = new StringBuilder();
+			for(int i = 0; i < positions; i++) {
+
+				QuartoBoard position = randomPosition(random, NUMBER_OF_ROWS * NUMBER_OF_COLUMNS - emptyCells);
+				int piece = safePiece(random, position);
+				long start = System.nanoTime();
+				if(solver.solve(position, piece, start + 20000 * 1000000L)) {
+					solved++;
+					values.append(solver.getValue() + " ");
+				} else {
+					values.append("? ");
+				}
+				millis[i] = (System.nanoTime() - start) / 1000000;
+			}
+			Arrays.sort(millis);
+			System.out.println(emptyCells + " empty cells: " + solved + "/" + positions + " solved, median " + millis[positions / 2] + " ms, max " + millis[positions - 1] + " ms, values " + values);
+		}
+	}
+
+	//plays pieces that do not win at random until the board holds the given number, the game is still open
+	private static QuartoBoard randomPosition(SplittableRandom random, int pieces) {
+
+		while(true) {
+			QuartoBoard position = new QuartoBoard(NUMBER_OF_ROWS, NUMBER_OF_COLUMNS, NUMBER_OF_PIECES, null);
+			boolean open = true;
+			while(open && position.getNumberOfMoves() < pieces) {
+
+				int piece = safePiece(random, position);
+				int[] cells = MonteCarlo.getPossibleMoves(position);
+				open = false;
+				for(int i = 0; i < cells.length && !open; i++) {
+					int j = i + random.nextInt(cells.length - i);
+					int cell = cells[j];
+					cells[j] = cells[i];
+					position.insertPieceOnBoard(cell / NUMBER_OF_COLUMNS, cell % NUMBER_OF_COLUMNS, piece);
+					open = !position.isWinningMove(cell / NUMBER_OF_COLUMNS, cell % NUMBER_OF_COLUMNS);
+					if(!open) {
+						position.undoLastMove();
+					}
+				}
+			}
+			if(open) {
+				return position;
+			}
+		}
+	}
+
+	//a random piece that cannot win at once, or any piece when there is none
+	private static int safePiece(SplittableRandom random, QuartoBoard position) {
+
+		int[] pieces = MonteCarlo.getPossiblePieces(position);
+		int winning = position.getWinningPieces();
+		for(int i = 0; i < pieces.length; i++) {
+
+			int j = i + random.nextInt(pieces.length - i);
+			int piece = pieces[j];
+			pieces[j] = pieces[i];
+			if((winning & (1 << piece)) == 0) {
+				return piece;
+			}
+		}
+		return pieces[0];
+	}
+
+	//nodeBudget 0 lets the tree grow without a limit
+	private static void stress(QuartoBoard board, int nodeBudget) {
+
+		//far more threads than cores, so they keep getting preempted in the middle of updates
+		int threads = Math.max(8, 4 * Runtime.getRuntime().availableProcessors());
+		MonteCarlo mc = new MonteCarlo(3000, 1 / Math.sqrt(2), false, threads);
+		mc.setSharedTree(true);
+		mc.setNodeBudget(nodeBudget);
+		//the threads share the root's allocator as well
+		mc.setSequentialHalving(true);
+		NodeArena tree = mc.treeParallelSearch(board, null, System.nanoTime() + 3000 * 1000000L);
+		int root = tree.getRoot();
+
+		int errors = 0;
+		long nodes = 0;
+		if(tree.getN(root) != mc.getLastIterations()) {
+			System.out.println("root has " + tree.getN(root) + " playouts but " + mc.getLastIterations() + " iterations were run");
+			errors++;
+		}
+
+		QuartoBoard position = new QuartoBoard(board);
+		ArrayDeque<Integer> stack = new ArrayDeque<Integer>();
+		stack.push(root);
+		while(!stack.isEmpty()) {
+
+			int node = stack.pop();
+			nodes++;
+			if(tree.isFree(node)) {
+				System.out.println("node " + node + " was freed but is still linked");
+				errors++;
+				continue;
+			}
+
+			//the position replayed from the root has to be the one the node was created for
+			int piece = tree.getPosition(node, position);
+			if((position.getZobristHash() ^ QuartoBoard.getZobristHandKey(piece)) != tree.getKey(node)) {
+				System.out.println("node " + node + " does not replay to its own position");
+				errors++;
+			}
+
+			int childN = 0;
+			int childQ = 0;
+			int childDecisive = 0;
+			int expanded = tree.getNumberOfChildSlots(node) - tree.getNumberOfRemainingMoves(node);
+			for(int i = 0; i < tree.getNumberOfChildSlots(node); i++) {
+				int child = tree.getChild(node, i);
+				if(child == NodeArena.NONE) {
+					if(i >= tree.getNumberOfRemainingMoves(node)) {
+						System.out.println("claimed child " + i + " was never published");
+						errors++;
+					}
+					continue;
+				}
+				if(tree.getParent(child) != node) {
+					System.out.println("child " + i + " has the wrong parent");
+					errors++;
+				}
+				childN += tree.getN(child);
+				childQ += tree.getQ(child);
+				childDecisive += tree.getDecisive(child);
+				expanded--;
+				stack.push(child);
+			}
+
+			//playouts that stopped at this node are the only difference between it and its children
+			int ownN = tree.getN(node) - childN;
+			int ownDecisive = tree.getDecisive(node) - childDecisive;
+			if(tree.getVirtualLosses(node) != 0 || expanded != 0 || ownN < 0 || Math.abs(tree.getQ(node) - childQ) > ownN || Math.abs(tree.getQ(node)) > tree.getN(node)
+					|| ownDecisive < 0 || ownDecisive > ownN || Math.abs(tree.getQ(node)) > tree.getDecisive(node)) {
+				System.out.println("inconsistent node: n=" + tree.getN(node) + " q=" + tree.getQ(node) + " decisive=" + tree.getDecisive(node) + " children n=" + childN + " q=" + childQ
+						+ " decisive=" + childDecisive + " virtual losses=" + tree.getVirtualLosses(node));
+				errors++;
+			}
+		}
+
+		//without a transposition table every node is reached once, so the live ones are exactly the ones linked
+		if(nodes != tree.getLiveNodes()) {
+			System.out.println(nodes + " nodes are linked but " + tree.getLiveNodes() + " are live");
+			errors++;
+		}
+		System.out.println(threads + " threads, node budget " + nodeBudget + ", " + mc.getLastIterations() + " iterations, " + tree.getEvictions() + " evictions, "
+				+ nodes + " nodes checked, " + errors + " errors");
+		if(errors != 0) {
+			System.exit(-1);
+		}
+	}
+
+	//iterations per second of a five second search from the position and how many nodes its tree fits in a gigabyte
+	//nodeBudget 0 lets the tree grow without a limit, otherwise the evictions it took are shown as well
+	private static void tree(QuartoBoard board, int nodeBudget) {
+
+		MonteCarlo mc = new MonteCarlo(5000, 1 / Math.sqrt(2), true, 1);
+		mc.setTranspositionTableSize(1 << 18);
+		mc.setRolloutEpsilon(0.1);
+		mc.setNodeBudget(nodeBudget);
+		long start = System.nanoTime();
+		NodeArena tree = mc.treeParallelSearch(board, null, start + 5000 * 1000000L);
+		long nanos = System.nanoTime() - start;
+
+		long bytes = tree.getAllocatedBytes();
+		System.out.println("node budget " + nodeBudget + ": " + mc.getLastIterations() + " iterations (" + (long) (mc.getLastIterations() * 1e9 / nanos) + " per second), "
+				+ tree.getLiveNodes() + " nodes in " + bytes / (1024 * 1024) + " MB of arena, " + bytes / Math.max(1, tree.size()) + " bytes per node, "
+				+ (1L << 30) * tree.size() / Math.max(1, bytes) + " nodes per GB, " + tree.getEvictions() + " evictions, " + tree.getReclaimedNodes() + " nodes reclaimed");
+	}
+
+}
@@ -1,21 +1,85 @@
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.util.Arrays;
+import java.util.SplittableRandom;
 
 public class QuartoBoard {
 
-	public QuartoPiece[][] board;
-	public QuartoPiece[] pieces;
+	//every piece's characteristics fit in the low 5 bits of its pieceID
+	public static final int ATTRIBUTE_MASK = 0x1F;
+
+	private int numberOfRows;
+	private int numberOfColumns;
+	private int numberOfPieces;
+
+	//packed copy of the board used by the win checks
+	//cell index is row * numberOfColumns + column, a set bit in occupiedCells means the cell holds a piece
+	//cellWords holds the 5 bit pieceID of every cell, CELLS_PER_WORD cells to a long
+	private static final int CELLS_PER_WORD = 12;
+	private long[] cellWords;
+	private int occupiedCells;
+	//bit i is set when piece i is on the board, pieceCells holds the cell it is on (-1 when not in play)
+	private int piecesInPlay;
+	private byte[] pieceCells;
+
+	//cell masks for every row, then every column, then the two diagonals (square boards only)
+	private int[] lineCells;
+	//the indexes of the lines passing through every cell
+	private int[][] cellLines;
+
+	//running totals for every line, kept up to date by insertPieceOnBoard
+	//lineTallies packs one 3 bit counter per characteristic (the number of pieces on the line with that bit set)
+	//and above them, starting at FILL_SHIFT, the number of pieces on the line
+	private static final int FILL_SHIFT = 15;
+	private int[] lineTallies;
+	private static final int[] TALLY_INCREMENT = createTallyIncrements();
+
+	//threat index: for every line with one empty cell the mask of pieceIDs that complete it on that cell, 0 for other lines
+	//kept up to date with lineTallies, so the threat queries only OR a few masks together
+	private int[] lineWinners;
+	//a line is live while all of its pieces have, or all of them lack, some characteristic, so it can still be won
+	//liveLineFills holds the number of pieces on every live line and -1 for the others, liveLineCounts how many live lines
+	//hold every number of pieces, both kept up to date with lineTallies for the static evaluation (QuartoEvaluator)
+	private byte[] liveLineFills;
+	private int[] liveLineCounts;
+	//the lowest bit of every characteristic counter in a tally
+	private static final int COUNTER_ONES = 01111111 & ((1 << FILL_SHIFT) - 1);
+	//THREAT_WINNERS[allSet | allClear << 1] has every pieceID with one of the allSet characteristics or without one of allClear,
+	//both given as a bit at the lowest bit of the characteristic's counter
+	private static final int[] THREAT_WINNERS = createThreatWinners();
+
+	//cells in the order pieces were inserted, so moves can be taken back with undoLastMove
+	private int[] moveHistory;
+	private int numberOfMoves;
+
+	//Zobrist hash of the pieces on the board, updated by every insert and remove
+	//the keys come from a fixed seed so the same position hashes the same in every run
+	private static final int MAXIMUM_CELLS = Integer.SIZE;
+	private static final long[] ZOBRIST_KEYS = createZobristKeys();
+	private long zobristHash;
 
 	public QuartoBoard(int numberOfRows, int numberOfColumns, int numberOfPieces, String stateFileName) {
-		//create board
-		this.board = new QuartoPiece[numberOfRows][numberOfColumns];
-
-		//create all QuartoPieces
-		this.pieces = new QuartoPiece[numberOfPieces];
-		for(int i = 0; i < numberOfPieces; i++) {
-			this.pieces[i] = new QuartoPiece(i);
+		if(numberOfRows * numberOfColumns > Integer.SIZE || numberOfPieces > Integer.SIZE || Math.max(numberOfRows, numberOfColumns) > 7) {
+			throw new Error("board is too large to be packed");
 		}
+		//create board
+		this.numberOfRows = numberOfRows;
+		this.numberOfColumns = numberOfColumns;
+		this.numberOfPieces = numberOfPieces;
+		this.cellWords = new long[(numberOfRows * numberOfColumns + CELLS_PER_WORD - 1) / CELLS_PER_WORD];
+		this.lineCells = createLineCells(numberOfRows, numberOfColumns);
+		this.cellLines = createCellLines(this.lineCells, numberOfRows * numberOfColumns);
+		this.lineTallies = new int[this.lineCells.length];
+		this.lineWinners = new int[this.lineCells.length];
+		//every line is empty, and so live
+		this.liveLineFills = new byte[this.lineCells.length];
+		this.liveLineCounts = new int[Math.max(numberOfRows, numberOfColumns) + 1];
+		this.liveLineCounts[0] = this.lineCells.length;
+		this.moveHistory = new int[numberOfRows * numberOfColumns];
+
+		//no piece is in play yet
+		this.pieceCells = new byte[numberOfPieces];
+		Arrays.fill(this.pieceCells, (byte) -1);
 
 		if (stateFileName != null) {
 			this.setBoardFromFile(stateFileName, numberOfRows, numberOfColumns);
@@ -24,22 +88,44 @@ public class QuartoBoard {
 	}
 
 	//copy constructor that can be used by agents to get a "deep copy" of the board
+	//pieces are shared, so this only copies a few small primitive arrays
 	public QuartoBoard(QuartoBoard quartoBoard) {
-		this.board = new QuartoPiece[quartoBoard.getNumberOfRows()][quartoBoard.getNumberOfColumns()];
-		this.pieces = new QuartoPiece[quartoBoard.getNumberOfPieces()];
+		this.numberOfRows = quartoBoard.numberOfRows;
+		this.numberOfColumns = quartoBoard.numberOfColumns;
+		this.numberOfPieces = quartoBoard.numberOfPieces;
+		this.cellWords = quartoBoard.cellWords.clone();
+		this.occupiedCells = quartoBoard.occupiedCells;
+		this.piecesInPlay = quartoBoard.piecesInPlay;
+		this.pieceCells = quartoBoard.pieceCells.clone();
+		this.lineTallies = quartoBoard.lineTallies.clone();
+		this.lineWinners = quartoBoard.lineWinners.clone();
+		this.liveLineFills = quartoBoard.liveLineFills.clone();
+		this.liveLineCounts = quartoBoard.liveLineCounts.clone();
+		this.moveHistory = quartoBoard.moveHistory.clone();
+		this.numberOfMoves = quartoBoard.numberOfMoves;
+		this.zobristHash = quartoBoard.zobristHash;
+		//line masks never change so they can be shared between copies
+		this.lineCells = quartoBoard.lineCells;
+		this.cellLines = quartoBoard.cellLines;
 
-		for(int i = 0; i < this.getNumberOfPieces(); i++) {
-			this.pieces[i] = new QuartoPiece(quartoBoard.pieces[i]);
-		}
+	}
 
-		for (int row = 0; row < quartoBoard.getNumberOfRows(); row++) {
-			for (int col = 0; col < quartoBoard.getNumberOfColumns(); col++) {
-				if (quartoBoard.getPieceOnPosition(row, col) != null) {
-					this.board[row][col] = this.getPiece(quartoBoard.getPieceOnPosition(row, col).getPieceID());
-				}
-			}
+	//overwrites this board with the position on another board of the same size without allocating
+	public void copyFrom(QuartoBoard quartoBoard) {
+		if(quartoBoard.numberOfRows != this.numberOfRows || quartoBoard.numberOfColumns != this.numberOfColumns || quartoBoard.numberOfPieces != this.numberOfPieces) {
+			throw new IllegalArgumentException("boards are not the same size");
 		}
-
+		System.arraycopy(quartoBoard.cellWords, 0, this.cellWords, 0, this.cellWords.length);
+		this.occupiedCells = quartoBoard.occupiedCells;
+		this.piecesInPlay = quartoBoard.piecesInPlay;
+		System.arraycopy(quartoBoard.pieceCells, 0, this.pieceCells, 0, this.pieceCells.length);
+		System.arraycopy(quartoBoard.lineTallies, 0, this.lineTallies, 0, this.lineTallies.length);
+		System.arraycopy(quartoBoard.lineWinners, 0, this.lineWinners, 0, this.lineWinners.length);
+		System.arraycopy(quartoBoard.liveLineFills, 0, this.liveLineFills, 0, this.liveLineFills.length);
+		System.arraycopy(quartoBoard.liveLineCounts, 0, this.liveLineCounts, 0, this.liveLineCounts.length);
+		System.arraycopy(quartoBoard.moveHistory, 0, this.moveHistory, 0, quartoBoard.numberOfMoves);
+		this.numberOfMoves = quartoBoard.numberOfMoves;
+		this.zobristHash = quartoBoard.zobristHash;
 	}
 
 	//returns a QuartoPiece object for the pieceId
@@ -47,184 +133,383 @@ public class QuartoBoard {
 		if(pieceID < 0 || pieceID >= this.getNumberOfPieces()) {
 			return null;
 		}
-		return this.pieces[pieceID];
+		return QuartoPiece.getPiece(pieceID);
 	}
 
 	//returns a QuartoPiece object occupying [row,column]
 	public QuartoPiece getPieceOnPosition(int row, int column) {
 
-		if(row < 0 || row >= this.getNumberOfRows() || column < 0 || column >= this.getNumberOfColumns()) {
+		if(!this.isSpaceTaken(row, column)) {
 			return null;
 		}
 
-		return this.board[row][column];
+		return QuartoPiece.getPiece(this.getPieceIDOnCell(row * this.getNumberOfColumns() + column));
 
 	}
 
+	//returns the row of a piece in play, or -1
+	public int getPieceRow(int pieceID) {
+		if(!this.isPieceOnBoard(pieceID)) {
+			return -1;
+		}
+		return this.pieceCells[pieceID] / this.getNumberOfColumns();
+	}
+
+	//returns the column of a piece in play, or -1
+	public int getPieceColumn(int pieceID) {
+		if(!this.isPieceOnBoard(pieceID)) {
+			return -1;
+		}
+		return this.pieceCells[pieceID] % this.getNumberOfColumns();
+	}
+
 	//inserts a QuartoPiece object on the board
 	public boolean insertPieceOnBoard(int row, int column, int pieceID) {
 
 		//some error checking
-		if(row < 0 || row >= this.getNumberOfRows() || column < 0 || column >= this.getNumberOfColumns() || pieceID < 0 || pieceID >= this.getNumberOfPieces() || this.getPiece(pieceID).isInPlay()) {
+		if(row < 0 || row >= this.getNumberOfRows() || column < 0 || column >= this.getNumberOfColumns() || pieceID < 0 || pieceID >= this.getNumberOfPieces() || this.isPieceOnBoard(pieceID) || this.isSpaceTaken(row, column)) {
 			return false;
 		}
 
+		int cell = row * this.getNumberOfColumns() + column;
 		//update the piece's info
-		this.getPiece(pieceID).setPosition(row, column);
+		this.pieceCells[pieceID] = (byte) cell;
 		//update the board
-		this.board[row][column] = this.getPiece(pieceID);
+		int shift = (cell % CELLS_PER_WORD) * 5;
+		this.cellWords[cell / CELLS_PER_WORD] = (this.cellWords[cell / CELLS_PER_WORD] & ~((long) ATTRIBUTE_MASK << shift)) | ((long) pieceID << shift);
+		this.occupiedCells |= 1 << cell;
+		this.zobristHash ^= getZobristKey(cell, pieceID);
+		this.piecesInPlay |= 1 << pieceID;
+
+		for(int line : this.cellLines[cell]) {
+			this.lineTallies[line] += TALLY_INCREMENT[pieceID];
+			this.updateLineWinners(line);
+			this.updateLiveLine(line);
+		}
+		this.moveHistory[this.numberOfMoves++] = cell;
 
 		return true;
 
 	}
-	/**
-	======================================================================================================
-	//this seems important 
-	//checks if a piece is on the board	
-	======================================================================================================
-	*/
-	public boolean isPieceOnBoard(int pieceID) {
-		QuartoPiece piece = this.getPiece(pieceID);
-		if(piece == null) {
+
+	//takes the piece on [row,column] back off the board, leaving the board exactly as it was before it was inserted
+	public boolean removePieceFromBoard(int row, int column) {
+
+		if(!this.isSpaceTaken(row, column)) {
 			return false;
 		}
-		return piece.isInPlay();
-	}	
 
-	//checks if a space is occupied
-	public boolean isSpaceTaken(int row, int column) {
-		if(row < 0 || row >= this.getNumberOfRows() || column < 0 || column >= this.getNumberOfColumns() || this.getPieceOnPosition(row, column) == null ) {
-			return false;
+		int cell = row * this.getNumberOfColumns() + column;
+		int pieceID = this.getPieceIDOnCell(cell);
+
+		//update the piece's info
+		this.pieceCells[pieceID] = -1;
+		//update the board
+		this.occupiedCells &= ~(1 << cell);
+		this.zobristHash ^= getZobristKey(cell, pieceID);
+		this.piecesInPlay &= ~(1 << pieceID);
+
+		for(int line : this.cellLines[cell]) {
+			this.lineTallies[line] -= TALLY_INCREMENT[pieceID];
+			this.updateLineWinners(line);
+			this.updateLiveLine(line);
 		}
-		return true;
 
-	}
+		//the move is almost always the last one made, otherwise close the gap it leaves in the history
+		int index = this.numberOfMoves - 1;
+		while(this.moveHistory[index] != cell) {
+			index--;
+		}
+		System.arraycopy(this.moveHistory, index + 1, this.moveHistory, index, this.numberOfMoves - index - 1);
+		this.numberOfMoves--;
 
-	//simple Getters
-	public int getNumberOfRows() {
-		return this.board.length;
-	}
-	
-	public int getNumberOfColumns() {
-		return this.board[0].length;
+		return true;
 	}
 
-	public int getNumberOfPieces() {
-		return this.pieces.length;
+	//takes back the most recent insertPieceOnBoard
+	public boolean undoLastMove() {
+		if(this.numberOfMoves == 0) {
+			return false;
+		}
+		int cell = this.moveHistory[this.numberOfMoves - 1];
+		return this.removePieceFromBoard(cell / this.getNumberOfColumns(), cell % this.getNumberOfColumns());
 	}
 
+	//hash of the pieces on the board, equal positions have equal hashes no matter the order the pieces went in
+	public long getZobristHash() {
+		return this.zobristHash;
+	}
 
-	//checks to see if there is a winning row
-	public boolean checkRow(int row) {
-
-		boolean[] characteristics;
-		int[] commonCharacteristics = new int[] {0, 0, 0, 0, 0};
+	//what inserting pieceID on cell XORs into the hash
+	public static long getZobristKey(int cell, int pieceID) {
+		return ZOBRIST_KEYS[cell * (ATTRIBUTE_MASK + 1) + pieceID];
+	}
 
-		for(int column = 0; column < this.getNumberOfColumns(); column++) {
-			QuartoPiece piece = this.getPieceOnPosition(row, column);
-			if(piece == null) {
-				return false;
-			}
-			characteristics = piece.getCharacteristicsArray();
-			for(int i = 0; i < commonCharacteristics.length; i++) {
-				commonCharacteristics[i] = commonCharacteristics[i] + (characteristics[i] ? 1 : 0);
-			}
+	//what having pieceID in hand, waiting to be placed, XORs into a position hash
+	//the extra key after the cells stands for no piece in hand
+	public static long getZobristHandKey(int pieceID) {
+		if(pieceID < 0) {
+			return ZOBRIST_KEYS[MAXIMUM_CELLS * (ATTRIBUTE_MASK + 1) + ATTRIBUTE_MASK + 1];
 		}
+		return ZOBRIST_KEYS[MAXIMUM_CELLS * (ATTRIBUTE_MASK + 1) + pieceID];
+	}
 
-		//loop through the commonCharacteristics array
-		//if the value is either 0 or 5 for any commonCharacteristics[i], all 5 pieces share that characteristic
-		for(int i = 0; i < commonCharacteristics.length; i++) {
-			if (commonCharacteristics[i] == 0 || commonCharacteristics[i] == 5) {
-				return true;
-			}
+	private static long[] createZobristKeys() {
+		SplittableRandom random = new SplittableRandom(0x5175617274L);
+		long[] keys = new long[(MAXIMUM_CELLS + 1) * (ATTRIBUTE_MASK + 1) + 1];
+		for(int i = 0; i < keys.length; i++) {
+			keys[i] = random.nextLong();
 		}
+		return keys;
+	}
 
-		return false;
+	//bit (row * numberOfColumns + column) is set for every occupied cell
+	public int getOccupiedCellMask() {
+		return this.occupiedCells;
+	}
 
+	//bit pieceID is set for every piece in play
+	public int getPiecesInPlayMask() {
+		return this.piecesInPlay;
 	}
 
-	//checks to see if there is a winning column
-	public boolean checkColumn(int column) {
+	//number of pieces on the board, also the depth of the undo history
+	public int getNumberOfMoves() {
+		return this.numberOfMoves;
+	}
+
+	//pieces not in play that win on some empty cell, handing one of them over loses on the spot
+	public int getWinningPieces() {
+		int winners = 0;
+		for(int line = 0; line < this.lineWinners.length; line++) {
+			winners |= this.lineWinners[line];
+		}
+		return winners & ~this.piecesInPlay & (int) ((1L << this.numberOfPieces) - 1);
+	}
 
-		boolean[] characteristics;
-		int[] commonCharacteristics = new int[] {0, 0, 0, 0, 0};
+	//the number of live lines holding this many pieces, the lines with one empty cell left are the threats
+	public int getLiveLines(int pieces) {
+		return this.liveLineCounts[pieces];
+	}
 
-		for(int row = 0; row < this.getNumberOfRows(); row++) {
-			QuartoPiece piece = this.getPieceOnPosition(row, column);
-			if(piece == null) {
-				return false;
-			}
-			characteristics = piece.getCharacteristicsArray();
-			for(int i = 0; i < commonCharacteristics.length; i++) {
-				commonCharacteristics[i] = commonCharacteristics[i] + (characteristics[i] ? 1 : 0);
+	//empty cells where pieceID wins
+	public int getWinningCells(int pieceID) {
+		int cells = 0;
+		for(int line = 0; line < this.lineWinners.length; line++) {
+			if((this.lineWinners[line] & (1 << pieceID)) != 0) {
+				cells |= this.lineCells[line] & ~this.occupiedCells;
 			}
 		}
+		return cells;
+	}
 
-		//loop through the commonCharacteristics array
-		//if the value is either 0 or 5 for any commonCharacteristics[i], all 5 pieces share that characteristic
-		for(int i = 0; i < commonCharacteristics.length; i++) {
-			if (commonCharacteristics[i] == 0 || commonCharacteristics[i] == 5) {
+	//checks if the piece on [row,column] completed a winning line, only the lines through that cell are looked at
+	public boolean isWinningMove(int row, int column) {
+		if(row < 0 || row >= this.getNumberOfRows() || column < 0 || column >= this.getNumberOfColumns()) {
+			return false;
+		}
+
+		for(int line : this.cellLines[row * this.getNumberOfColumns() + column]) {
+			if(this.checkLine(line)) {
 				return true;
 			}
 		}
-
 		return false;
 	}
 
-	//checks the Diagonals
-	public boolean checkDiagonals() {
-		boolean[] characteristics;
-		int[] commonCharacteristics = new int[] {0, 0, 0, 0, 0};
-		boolean unableToWinFirstDiagonal = false;
+	//returns the pieceID stored in a packed cell, only meaningful if the cell is occupied
+	int getPieceIDOnCell(int cell) {
+		return (int) (this.cellWords[cell / CELLS_PER_WORD] >>> ((cell % CELLS_PER_WORD) * 5)) & ATTRIBUTE_MASK;
+	}
 
+	//builds the cell masks of every line that can win the game
+	static int[] createLineCells(int numberOfRows, int numberOfColumns) {
+		int numberOfLines = numberOfRows + numberOfColumns + (numberOfRows == numberOfColumns ? 2 : 0);
+		int[] lines = new int[numberOfLines];
+
+		for(int row = 0; row < numberOfRows; row++) {
+			for(int column = 0; column < numberOfColumns; column++) {
+				int cellBit = 1 << (row * numberOfColumns + column);
+				lines[row] |= cellBit;
+				lines[numberOfRows + column] |= cellBit;
+				if(numberOfRows == numberOfColumns && row == column) {
+					lines[numberOfRows + numberOfColumns] |= cellBit;
+				}
+				if(numberOfRows == numberOfColumns && row + column == numberOfRows - 1) {
+					lines[numberOfRows + numberOfColumns + 1] |= cellBit;
+				}
+			}
+		}
+		return lines;
+	}
 
-		for(int row = 0, column = 0; row < this.getNumberOfRows(); row++, column++) {
-			QuartoPiece piece = this.getPieceOnPosition(row, column);
-			if(piece == null) {
-				unableToWinFirstDiagonal = true;
-				break;
+	//inverts the line masks so every cell knows which lines it is on
+	private static int[][] createCellLines(int[] lineCells, int numberOfCells) {
+		int[][] cellLines = new int[numberOfCells][];
+		for(int cell = 0; cell < numberOfCells; cell++) {
+			int count = 0;
+			for(int line = 0; line < lineCells.length; line++) {
+				if((lineCells[line] & (1 << cell)) != 0) {
+					count++;
+				}
 			}
-			characteristics = piece.getCharacteristicsArray();
-			for(int i = 0; i < commonCharacteristics.length; i++) {
-				commonCharacteristics[i] = commonCharacteristics[i] + (characteristics[i] ? 1 : 0);
+			cellLines[cell] = new int[count];
+			count = 0;
+			for(int line = 0; line < lineCells.length; line++) {
+				if((lineCells[line] & (1 << cell)) != 0) {
+					cellLines[cell][count++] = line;
+				}
 			}
 		}
+		return cellLines;
+	}
 
-		if (!unableToWinFirstDiagonal) {
-			for(int i = 0; i < commonCharacteristics.length; i++) {
-				if (commonCharacteristics[i] == 0 || commonCharacteristics[i] == 5) {
-					return true;
+	//spreads the 5 characteristic bits of every pieceID into 3 bit counters, and counts the piece in the fill
+	private static int[] createTallyIncrements() {
+		int[] increments = new int[ATTRIBUTE_MASK + 1];
+		for(int pieceID = 0; pieceID < increments.length; pieceID++) {
+			increments[pieceID] = 1 << FILL_SHIFT;
+			for(int i = 0; i < 5; i++) {
+				if((pieceID & (1 << i)) != 0) {
+					increments[pieceID] += 1 << (3 * i);
 				}
 			}
 		}
+		return increments;
+	}
 
-		commonCharacteristics = new int[] {0, 0, 0, 0, 0};
+	//a line with one empty cell is won there by a piece sharing a characteristic that all of its pieces have, or all lack
+	private void updateLineWinners(int line) {
+		int length = Integer.bitCount(this.lineCells[line]);
+		int tally = this.lineTallies[line];
+		int fill = tally >>> FILL_SHIFT;
+		if(fill != length - 1 || fill == 0) {
+			this.lineWinners[line] = 0;
+			return;
+		}
+		//all counters are compared at once: a counter is zero when none of its 3 bits is set
+		int counters = tally & ((1 << FILL_SHIFT) - 1);
+		int fromFill = counters ^ (fill * COUNTER_ONES);
+		int allSet = ~(fromFill | fromFill >>> 1 | fromFill >>> 2) & COUNTER_ONES;
+		int allClear = ~(counters | counters >>> 1 | counters >>> 2) & COUNTER_ONES;
+		this.lineWinners[line] = THREAT_WINNERS[allSet | allClear << 1];
+	}
 
-		for(int row = this.board.length - 1, column = 0; row >= 0; row--, column++) {
-			QuartoPiece piece = this.getPieceOnPosition(row, column);
-			if(piece == null) {
-				return false;
-			}
-			characteristics = piece.getCharacteristicsArray();
-			for(int i = 0; i < commonCharacteristics.length; i++) {
-				commonCharacteristics[i] = commonCharacteristics[i] + (characteristics[i] ? 1 : 0);
+	private void updateLiveLine(int line) {
+		int tally = this.lineTallies[line];
+		int fill = tally >>> FILL_SHIFT;
+		int counters = tally & ((1 << FILL_SHIFT) - 1);
+		int fromFill = counters ^ (fill * COUNTER_ONES);
+		int allSet = ~(fromFill | fromFill >>> 1 | fromFill >>> 2) & COUNTER_ONES;
+		int allClear = ~(counters | counters >>> 1 | counters >>> 2) & COUNTER_ONES;
+		int liveFill = (allSet | allClear) != 0 ? fill : -1;
+		if(this.liveLineFills[line] >= 0) {
+			this.liveLineCounts[this.liveLineFills[line]]--;
+		}
+		if(liveFill >= 0) {
+			this.liveLineCounts[liveFill]++;
+		}
+		this.liveLineFills[line] = (byte) liveFill;
+	}
+
+	private static int[] createThreatWinners() {
+		int[] winners = new int[COUNTER_ONES << 2];
+		for(int threat = 0; threat < winners.length; threat++) {
+			for(int i = 0; i < 5; i++) {
+				boolean allSet = (threat & (1 << (3 * i))) != 0;
+				boolean allClear = (threat & (2 << (3 * i))) != 0;
+				for(int pieceID = 0; pieceID <= ATTRIBUTE_MASK; pieceID++) {
+					boolean set = (pieceID & (1 << i)) != 0;
+					if(set ? allSet : allClear) {
+						winners[threat] |= 1 << pieceID;
+					}
+				}
 			}
+		}
+		return winners;
+	}
 
+	//a full line wins if all of its pieces have, or all of them lack, some characteristic
+	private boolean checkLine(int line) {
+		int length = Integer.bitCount(this.lineCells[line]);
+		int tally = this.lineTallies[line];
+		if((tally >>> FILL_SHIFT) != length) {
+			return false;
 		}
 
-		for(int i = 0; i < commonCharacteristics.length; i++) {
-			if (commonCharacteristics[i] == 0 || commonCharacteristics[i] == 5) {
+		for(int i = 0; i < 5; i++) {
+			int count = (tally >>> (3 * i)) & 7;
+			if(count == 0 || count == length) {
 				return true;
 			}
 		}
-
 		return false;
 	}
+	/**
+	======================================================================================================
+	//this seems important 
+	//checks if a piece is on the board	
+	======================================================================================================
+	*/
+	public boolean isPieceOnBoard(int pieceID) {
+		if(pieceID < 0 || pieceID >= this.getNumberOfPieces()) {
+			return false;
+		}
+		return (this.piecesInPlay & (1 << pieceID)) != 0;
+	}	
+
+	//checks if a space is occupied
+	public boolean isSpaceTaken(int row, int column) {
+		if(row < 0 || row >= this.getNumberOfRows() || column < 0 || column >= this.getNumberOfColumns()) {
+			return false;
+		}
+		return (this.occupiedCells & (1 << (row * this.getNumberOfColumns() + column))) != 0;
+
+	}
+
+	//simple Getters
+	public int getNumberOfRows() {
+		return this.numberOfRows;
+	}
+	
+	public int getNumberOfColumns() {
+		return this.numberOfColumns;
+	}
+
+	public int getNumberOfPieces() {
+		return this.numberOfPieces;
+	}
+
+
+	//checks to see if there is a winning row
+	public boolean checkRow(int row) {
+		if(row < 0 || row >= this.getNumberOfRows()) {
+			return false;
+		}
+		return this.checkLine(row);
+	}
+
+	//checks to see if there is a winning column
+	public boolean checkColumn(int column) {
+		if(column < 0 || column >= this.getNumberOfColumns()) {
+			return false;
+		}
+		return this.checkLine(this.getNumberOfRows() + column);
+	}
+
+	//checks the Diagonals
+	public boolean checkDiagonals() {
+		int firstDiagonal = this.getNumberOfRows() + this.getNumberOfColumns();
+		if(this.lineCells.length == firstDiagonal) {
+			return false;
+		}
+		return this.checkLine(firstDiagonal) || this.checkLine(firstDiagonal + 1);
+	}
 
 	//gets the next available piece in the piece array
 	public int chooseNextPieceNotPlayed() {
-		for(int i = 0; i < pieces.length; i++) {
-			if(!this.getPiece(i).isInPlay()) {
+		for(int i = 0; i < this.getNumberOfPieces(); i++) {
+			if(!this.isPieceOnBoard(i)) {
 				return i;
 			}
 		}
@@ -235,8 +520,8 @@ public class QuartoBoard {
 
 	//overloaded so you can pass an offset
 	public int chooseNextPieceNotPlayed(int offset) {
-		for(int i = offset; i < pieces.length; i++) {
-			if(!this.getPiece(i).isInPlay()) {
+		for(int i = offset; i < this.getNumberOfPieces(); i++) {
+			if(!this.isPieceOnBoard(i)) {
 				return i;
 			}
 		}
@@ -268,7 +553,7 @@ public class QuartoBoard {
 		//generate random number
 		int pieceId = (int)(Math.random() * (this.getNumberOfPieces()));
 
-		if(this.getPiece(pieceId).isInPlay()) {
+		if(this.isPieceOnBoard(pieceId)) {
 			pieceId = this.chooseRandomPieceNotPlayed(numberOfAttempts - 1);
 		}
 
@@ -375,14 +660,7 @@ public class QuartoBoard {
 
 	//checks if the board is full
 	public boolean checkIfBoardIsFull() {
-		for(int row = 0; row < this.getNumberOfRows(); row++) {
-			for(int column = 0; column < this.getNumberOfColumns(); column++) {
-				if (board[row][column] == null) {
-					return false;
-				}
-			}
-		}
-		return true;
+		return Integer.bitCount(this.occupiedCells) == this.getNumberOfRows() * this.getNumberOfColumns();
 	}
 
 }
@@ -0,0 +1,43 @@
+//a static evaluation of a position, for rollouts cut short before the end of the game (QuartoRollout.setDepth)
+//positions are scored for the player about to hand over a piece, in [-1, 1] like the scores of finished games
+//what decides a Quarto endgame is the safe pieces, the free pieces that can not win on any free cell: with none left the
+//player handing over loses, otherwise the two players use them up in turn and whoever hands over the last one tends to
+//win, so an odd number is good for the player handing over and an even one bad, less so the more of them there are
+//the lines with four pieces that can still be won count through the safe pieces, the live lines with three pieces are
+//where a placement can turn safe pieces into winning ones and so flip the parity, which only helps the losing side
+//all of it is read from QuartoBoard's winner masks and live line counts, kept up to date as pieces go on and off
+public final class QuartoEvaluator {
+
+	//the mean score of mostly tactical rollouts (epsilon 0.1) for the player handing over, by the number of safe pieces,
+	//measured from random positions with 6 to 22 empty cells, with more safe pieces than these it is within 0.01 of a draw
+	//no safe piece at all loses outright, the opponent places the piece where it wins
+	private static final double[] SAFE_PIECE_VALUES = {-1, 0.5, -0.15, 0.1, -0.02, 0.05};
+	//with an even number of safe pieces every live line with three pieces above the usual number is worth this much
+	//divided by the number of safe pieces, by the same measurement
+	private static final double THREE_PIECE_LINE_WEIGHT = 0.2;
+	private static final int USUAL_THREE_PIECE_LINES = 3;
+
+	private QuartoEvaluator() {
+	}
+
+	//the value of board for the player who hands over the next piece, 0 when the game is over as a draw
+	public static double evaluate(QuartoBoard board) {
+
+		int cells = board.getNumberOfRows() * board.getNumberOfColumns();
+		int freePieces = ~board.getPiecesInPlayMask() & (int) ((1L << board.getNumberOfPieces()) - 1);
+		if(freePieces == 0 || board.getNumberOfMoves() == cells) {
+			return 0;
+		}
+
+		int safePieces = Integer.bitCount(freePieces & ~board.getWinningPieces());
+		if(safePieces >= SAFE_PIECE_VALUES.length) {
+			return 0;
+		}
+		double value = SAFE_PIECE_VALUES[safePieces];
+		if(safePieces > 0 && safePieces % 2 == 0) {
+			value += THREE_PIECE_LINE_WEIGHT / safePieces * (board.getLiveLines(3) - USUAL_THREE_PIECE_LINES);
+		}
+		return Math.max(-1, Math.min(1, value));
+	}
+
+}
@@ -0,0 +1,200 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+//precomputed decisions for the first turns of a game, read from a memory-mapped file
+//positions are keyed by their canonical hash (QuartoSymmetry), so one entry serves every equivalent position, and the decision
+//is stored as the canonical hash of the position it leads to, which getAction finds again by trying the distinct actions
+//the file is a hash table with linear probing: MAGIC, the number of slots (a power of two), then every slot as the position key
+//and the key it leads to, big endian, a key of 0 marks an empty slot
+//the main method builds a book by searching every position the agent can face up to a number of pieces on the board
+//instances never change after they are opened and can be shared between threads
+public class QuartoOpeningBook {
+
+	private static final int MAGIC = 0x51424f4b;
+	private static final int HEADER_BYTES = 8;
+	private static final int SLOT_LONGS = 2;
+
+	private static final int NUMBER_OF_ROWS = 5;
+	private static final int NUMBER_OF_COLUMNS = 5;
+	private static final int NUMBER_OF_PIECES = 32;
+
+	private final LongBuffer slots;
+	private final int slotMask;
+
+	private QuartoOpeningBook(LongBuffer slots, int numberOfSlots) {
+		this.slots = slots;
+		this.slotMask = numberOfSlots - 1;
+	}
+
+	//maps the whole file, the mapping stays valid after the channel is closed
+	public static QuartoOpeningBook open(String fileName) throws IOException {
+
+		try(FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+				throw new IOException(fileName + " is not an opening book");
+			}
+			int numberOfSlots = buffer.getInt(4);
+			if(Integer.bitCount(numberOfSlots) != 1 || buffer.capacity() != HEADER_BYTES + (long) numberOfSlots * SLOT_LONGS * Long.BYTES) {
+				throw new IOException(fileName + " has the wrong size for " + numberOfSlots + " slots");
+			}
+			buffer.position(HEADER_BYTES);
+			return new QuartoOpeningBook(buffer.slice().asLongBuffer(), numberOfSlots);
+		}
+	}
+
+	//the book's action for the position with piece in hand (-1 when a piece has to be chosen): the cell index to place piece on,
+	//or the piece to hand over, -1 when the position is not in the book
+	public int getAction(QuartoBoard board, int piece) {
+
+		QuartoSymmetry symmetries = QuartoSymmetry.forBoard(board);
+		long successor = this.find(symmetries.getCanonicalHash(board, piece));
+		if(successor == 0) {
+			return -1;
+		}
+		QuartoBoard scratchBoard = new QuartoBoard(board);
+		int actions = piece < 0 ? symmetries.getDistinctPieces(board) : symmetries.getDistinctMoves(board, piece);
+		for(int bits = actions; bits != 0; bits &= bits - 1) {
+			int action = Integer.numberOfTrailingZeros(bits);
+			if(getSuccessorKey(symmetries, scratchBoard, piece, action) == successor) {
+				return action;
+			}
+		}
+		return -1;
+	}
+
+	private long find(long key) {
+
+		for(int slot = (int) key & this.slotMask; ; slot = (slot + 1) & this.slotMask) {
+			long slotKey = this.slots.get(slot * SLOT_LONGS);
+			if(slotKey == key) {
+				return this.slots.get(slot * SLOT_LONGS + 1);
+			}
+			if(slotKey == 0) {
+				return 0;
+			}
+		}
+	}
+
+	//the canonical hash of the position action leads to, board is changed only while it is computed
+	private static long getSuccessorKey(QuartoSymmetry symmetries, QuartoBoard board, int piece, int action) {
+
+		if(piece < 0) {
+			return symmetries.getCanonicalHash(board, action);
+		}
+		int columns = board.getNumberOfColumns();
+		board.insertPieceOnBoard(action / columns, action % columns, piece);
+		long key = symmetries.getCanonicalHash(board, -1);
+		board.removePieceFromBoard(action / columns, action % columns);
+		return key;
+	}
+
+	//the table is kept at most half full so probes stay short
+	public static void write(String fileName, Map<Long, Long> entries) throws IOException {
+
+		int numberOfSlots = 1;
+		while(numberOfSlots < 2 * entries.size()) {
+			numberOfSlots <<= 1;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + numberOfSlots * SLOT_LONGS * Long.BYTES);
+		buffer.putInt(MAGIC).putInt(numberOfSlots);
+		LongBuffer slots = buffer.asLongBuffer();
+
+		for(Map.Entry<Long, Long> entry: entries.entrySet()) {
+			int slot = (int) (long) entry.getKey() & (numberOfSlots - 1);
+			while(slots.get(slot * SLOT_LONGS) != 0) {
+				slot = (slot + 1) & (numberOfSlots - 1);
+			}
+			slots.put(slot * SLOT_LONGS, entry.getKey());
+			slots.put(slot * SLOT_LONGS + 1, entry.getValue());
+		}
+
+		buffer.rewind();
+		Path path = Paths.get(fileName);
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while(buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	//usage: java QuartoOpeningBook <bookFileName> <pieces> <millisPerPosition>
+	//plays from the empty board as the first and as the second player: the agent's own decisions are searched for
+	//millisPerPosition and only the chosen action is followed, every distinct action of the opponent is followed,
+	//until the board holds more than pieces pieces
+	public static void main(String[] args) throws IOException {
+
+		if(args.length < 3) {
+			System.out.println("usage: java QuartoOpeningBook <bookFileName> <pieces> <millisPerPosition>");
+			System.exit(-1);
+		}
+		int maximumPieces = Integer.parseInt(args[1]);
+		int millis = Integer.parseInt(args[2]);
+
+		QuartoBoard board = new QuartoBoard(NUMBER_OF_ROWS, NUMBER_OF_COLUMNS, NUMBER_OF_PIECES, null);
+		MonteCarlo mc = new MonteCarlo(millis, 1 / Math.sqrt(2), true, Runtime.getRuntime().availableProcessors());
+		mc.setTranspositionTableSize(1 << 18);
+
+		Map<Long, Long> entries = new HashMap<Long, Long>();
+		Set<Long> followed = new HashSet<Long>();
+		for(boolean first: new boolean[] {true, false}) {
+			build(board, -1, first, maximumPieces, mc, entries, followed);
+		}
+		write(args[0], entries);
+		System.out.println("Book: " + entries.size() + " positions written to " + args[0]);
+	}
+
+	//ownTurn is set when the agent decides in the position with piece in hand (-1 when a piece has to be chosen)
+	private static void build(QuartoBoard board, int piece, boolean ownTurn, int maximumPieces, MonteCarlo mc, Map<Long, Long> entries, Set<Long> followed) {
+
+		if(board.getNumberOfMoves() > maximumPieces) {
+			return;
+		}
+		QuartoSymmetry symmetries = QuartoSymmetry.forBoard(board);
+		long key = symmetries.getCanonicalHash(board, piece);
+		//the same position is the agent's decision in one game and the opponent's in the other
+		if(!followed.add(ownTurn ? key : ~key)) {
+			return;
+		}
+
+		if(ownTurn) {
+
+			int action = mc.UCTSearch(board, piece < 0 ? null : piece);
+			entries.put(key, getSuccessorKey(symmetries, board, piece, action));
+			System.out.println("Book: " + entries.size() + " positions, " + board.getNumberOfMoves() + " pieces on the board, action " + action);
+			follow(board, piece, action, ownTurn, maximumPieces, mc, entries, followed);
+			return;
+		}
+		int actions = piece < 0 ? symmetries.getDistinctPieces(board) : symmetries.getDistinctMoves(board, piece);
+		for(int bits = actions; bits != 0; bits &= bits - 1) {
+			follow(board, piece, Integer.numberOfTrailingZeros(bits), ownTurn, maximumPieces, mc, entries, followed);
+		}
+	}
+
+	//handing a piece over passes the turn, placing one does not, a placement that ends the game is not followed
+	private static void follow(QuartoBoard board, int piece, int action, boolean ownTurn, int maximumPieces, MonteCarlo mc, Map<Long, Long> entries, Set<Long> followed) {
+
+		if(piece < 0) {
+			build(board, action, !ownTurn, maximumPieces, mc, entries, followed);
+			return;
+		}
+		int row = action / board.getNumberOfColumns();
+		int column = action % board.getNumberOfColumns();
+		board.insertPieceOnBoard(row, column, piece);
+		if(!board.isWinningMove(row, column) && !board.checkIfBoardIsFull()) {
+			build(board, -1, ownTurn, maximumPieces, mc, entries, followed);
+		}
+		board.removePieceFromBoard(row, column);
+	}
+
+}
@@ -1,102 +1,69 @@
-public class QuartoPiece {
+public final class QuartoPiece {
 
-	private int pieceID;
+	//pieces never change, so every board shares this one table instead of creating its own pieces
+	//whether a piece is in play and where it sits is kept by each QuartoBoard
+	private static final QuartoPiece[] PIECES = createPieces();
 
-	private boolean[] characteristics;
+	private final int pieceID;
+
+	//the characteristics are the bits of the pieceID, most significant bit first
 	//first position [0] is tall/short
 	//second position [1] is solid/hollow
 	//third position [2] is white/black
 	//fourth position [3] is wood/metal
 	//fifth position [4] is round/square
+	private final int characteristics;
+	private final String binaryString;
 
-
-	private int row, column;
-	private boolean inPlay;
-
-	public QuartoPiece(int pieceID) {
-		this.inPlay = false;
+	private QuartoPiece(int pieceID) {
 		this.pieceID = pieceID;
-		//piece does not have a position upon creation, so set row and column to -1
-		row = -1;
-		column = -1;
-
-		this.characteristics = new boolean[5];
-		this.setCharacteristics();
-
+		this.characteristics = pieceID & QuartoBoard.ATTRIBUTE_MASK;
+		this.binaryString = String.format("%5s", Integer.toBinaryString(this.pieceID)).replace(' ', '0');
 	}
 
-	//copy constructor
-	public QuartoPiece(QuartoPiece quartoPiece) {
-		this.inPlay = quartoPiece.isInPlay();
-		this.pieceID = quartoPiece.getPieceID();
-		this.row = quartoPiece.getRow();
-		this.column = quartoPiece.getColumn();
-
-		this.characteristics = new boolean[5];
-		this.setCharacteristics();
-
-
+	private static QuartoPiece[] createPieces() {
+		QuartoPiece[] pieces = new QuartoPiece[QuartoBoard.ATTRIBUTE_MASK + 1];
+		for(int i = 0; i < pieces.length; i++) {
+			pieces[i] = new QuartoPiece(i);
+		}
+		return pieces;
 	}
 
-	public void setPosition(int row, int column) {
-		this.row = row;
-		this.column = column;
-		this.setInPlay(true);
+	//returns the shared QuartoPiece for the pieceID, or null if there is no such piece
+	public static QuartoPiece getPiece(int pieceID) {
+		if(pieceID < 0 || pieceID >= PIECES.length) {
+			return null;
+		}
+		return PIECES[pieceID];
 	}
 
 	public int getPieceID() {
 		return this.pieceID;
 	}
 
-	public int getRow() {
-		return this.row;
-	}
-
-	public int getColumn() {
-		return this.column;
-	}
-
-
-	public void setInPlay(boolean inPlay) {
-		this.inPlay = inPlay;
+	//all five characteristics as a 5 bit int, tall/short is the most significant bit
+	public int getCharacteristics() {
+		return this.characteristics;
 	}
 
-	public boolean isInPlay() {
-		return this.inPlay;
-	}
-
-	public void setCharacteristics() {
-
-		String tempBinaryString = (Integer.toBinaryString(this.pieceID));
-		//String binaryString = tempBinaryString.substring(tempBinaryString.length() -5);
-		String binaryString = String.format("%5s", Integer.toBinaryString(this.pieceID)).replace(' ', '0');
-		//System.out.println("binary string: " + binaryString);
-		
-		for (int i = 0; i < this.characteristics.length; i++){
-			char binaryChar = binaryString.charAt(i); 
-			if(binaryChar == '1') {
-				this.characteristics[i] = true;
-			} else {
-				this.characteristics[i] = false;
-			}
-		}
-		
+	private boolean hasCharacteristic(int index) {
+		return (this.characteristics & (1 << (4 - index))) != 0;
 	}
 
 	public boolean isTall() {
-		return this.characteristics[0];
+		return this.hasCharacteristic(0);
 	}
 	public boolean isSolid() {
-		return this.characteristics[1];
+		return this.hasCharacteristic(1);
 	}
 	public boolean isWhite() {
-		return this.characteristics[2];
+		return this.hasCharacteristic(2);
 	}
 	public boolean isWood() {
-		return this.characteristics[3];
+		return this.hasCharacteristic(3);
 	}
 	public boolean isRound() {
-		return this.characteristics[4];
+		return this.hasCharacteristic(4);
 	}
 
 
@@ -136,13 +103,18 @@ public class QuartoPiece {
 		}
 	}
 
+	//returns a new array each time since the piece itself is shared
 	public boolean[] getCharacteristicsArray() {
-		return this.characteristics;
+		boolean[] characteristicsArray = new boolean[5];
+		for(int i = 0; i < characteristicsArray.length; i++) {
+			characteristicsArray[i] = this.hasCharacteristic(i);
+		}
+		return characteristicsArray;
 	}
 	public String binaryStringRepresentation() {
-		return String.format("%5s", Integer.toBinaryString(this.pieceID)).replace(' ', '0');
+		return this.binaryString;
 	}
-	
+
 
 
 }
@@ -0,0 +1,243 @@
+import java.util.SplittableRandom;
+
+//plays random games to the end for the Monte Carlo search without allocating anything per move
+//the free cells and pieces are kept in arrays and removed by swapping with the last entry, so a random pick is O(1)
+//with an epsilon below 1 the other plies are tactical: a piece that wins somewhere is placed there, and the piece handed
+//over is one that can not win when there is one, both read from QuartoBoard's winner masks so a ply stays cheap
+//games are played on a private scratch copy, so the same board can be played out by several threads at once
+//with a depth set, games stop after that many placements and score the position with QuartoEvaluator instead
+//with recording on, the cells every player placed a piece on and the pieces they handed over in the last game are kept
+//for the RAVE statistics
+//an instance is not thread safe, every search thread should own its own QuartoRollout
+public class QuartoRollout {
+
+	private final int[] freeCells;
+	private final int[] freePieces;
+	private int numberOfFreeCells;
+	private int numberOfFreePieces;
+
+	private final SplittableRandom random;
+	private QuartoBoard scratchBoard;
+
+	//the share of plies played at random, 1 plays purely random games and 0 only tactical ones
+	private double epsilon = 1;
+
+	//placements played before a game stops and is scored by QuartoEvaluator, 0 plays every game to the end
+	private int depth;
+
+	//bit masks indexed by player, 1 for player == true
+	private boolean recording;
+	private final int[] recordedCells = new int[2];
+	private final int[] recordedPieces = new int[2];
+
+	//rollouts played and time spent in them, for reporting rollouts per second
+	private long rollouts;
+	private long rolloutNanos;
+	private long truncations;
+
+	public QuartoRollout() {
+		this(new SplittableRandom());
+	}
+
+	public QuartoRollout(SplittableRandom random) {
+		this.freeCells = new int[Integer.SIZE];
+		this.freePieces = new int[Integer.SIZE];
+		this.random = random;
+	}
+
+	//plays the game out randomly on a copy of the board, the board itself is never changed
+	//player1 is the player to act: when piece is -1 they choose a random piece for the other player to place,
+	//otherwise they place piece themselves
+	//returns 1 if player1 == true wins, -1 if they lose and 0 for a draw
+	//a game cut short at the depth returns 1 or -1 with the probability of the evaluation's size, otherwise 0, so the
+	//scores stay whole and add up in the tree like those of finished games while their mean is the evaluation
+	public int playGame(QuartoBoard board, int piece, boolean player1) {
+
+		long start = System.nanoTime();
+		if(this.scratchBoard == null) {
+			this.scratchBoard = new QuartoBoard(board);
+		} else {
+			this.scratchBoard.copyFrom(board);
+		}
+		board = this.scratchBoard;
+		this.setFreeCellsAndPieces(board);
+		this.recordedCells[0] = this.recordedCells[1] = 0;
+		this.recordedPieces[0] = this.recordedPieces[1] = 0;
+
+		if(piece == -1) {
+			piece = this.isTacticalPly() ? this.takeSafePiece(board) : this.takeRandomPiece();
+			this.recordGive(player1, piece);
+			player1 = !player1;
+		} else {
+			this.removeFreePiece(piece);
+		}
+
+		int score = 0;
+		int columns = board.getNumberOfColumns();
+		int placements = 0;
+
+		while(true) {
+
+			if(this.isTacticalPly() && board.getWinningCells(piece) != 0) {
+				this.recordPlacement(player1, Integer.numberOfTrailingZeros(board.getWinningCells(piece)));
+				score = player1 ? 1 : -1;
+				break;
+			}
+			int cell = this.takeRandomCell();
+			board.insertPieceOnBoard(cell / columns, cell % columns, piece);
+			this.recordPlacement(player1, cell);
+
+			if(board.isWinningMove(cell / columns, cell % columns)) {
+				score = player1 ? 1 : -1;
+				break;
+			}
+			if(this.numberOfFreeCells == 0 || this.numberOfFreePieces == 0) {
+				break;
+			}
+			if(++placements == this.depth) {
+				//player1 hands over the next piece
+				double value = QuartoEvaluator.evaluate(board);
+				if(this.random.nextDouble() < Math.abs(value)) {
+					score = (value > 0) == player1 ? 1 : -1;
+				}
+				this.truncations++;
+				break;
+			}
+
+			piece = this.isTacticalPly() ? this.takeSafePiece(board) : this.takeRandomPiece();
+			this.recordGive(player1, piece);
+			player1 = !player1;
+		}
+
+		this.rollouts++;
+		this.rolloutNanos += System.nanoTime() - start;
+		return score;
+	}
+
+	private void recordPlacement(boolean player, int cell) {
+		if(this.recording) {
+			this.recordedCells[player ? 1 : 0] |= 1 << cell;
+		}
+	}
+
+	private void recordGive(boolean player, int piece) {
+		if(this.recording) {
+			this.recordedPieces[player ? 1 : 0] |= 1 << piece;
+		}
+	}
+
+	private void setFreeCellsAndPieces(QuartoBoard board) {
+		this.numberOfFreeCells = 0;
+		int cells = board.getNumberOfRows() * board.getNumberOfColumns();
+		int occupied = board.getOccupiedCellMask();
+		for(int cell = 0; cell < cells; cell++) {
+			if((occupied & (1 << cell)) == 0) {
+				this.freeCells[this.numberOfFreeCells++] = cell;
+			}
+		}
+
+		this.numberOfFreePieces = 0;
+		int inPlay = board.getPiecesInPlayMask();
+		for(int pieceID = 0; pieceID < board.getNumberOfPieces(); pieceID++) {
+			if((inPlay & (1 << pieceID)) == 0) {
+				this.freePieces[this.numberOfFreePieces++] = pieceID;
+			}
+		}
+	}
+
+	private int takeRandomCell() {
+		int index = this.random.nextInt(this.numberOfFreeCells);
+		int cell = this.freeCells[index];
+		this.freeCells[index] = this.freeCells[--this.numberOfFreeCells];
+		return cell;
+	}
+
+	private int takeRandomPiece() {
+		int index = this.random.nextInt(this.numberOfFreePieces);
+		int piece = this.freePieces[index];
+		this.freePieces[index] = this.freePieces[--this.numberOfFreePieces];
+		return piece;
+	}
+
+	private boolean isTacticalPly() {
+		return this.epsilon < 1 && (this.epsilon <= 0 || this.random.nextDouble() >= this.epsilon);
+	}
+
+	//a random free piece that can not win on any free cell, any random piece when they all can
+	private int takeSafePiece(QuartoBoard board) {
+		int winning = board.getWinningPieces();
+		int safe = 0;
+		for(int i = 0; i < this.numberOfFreePieces; i++) {
+			if((winning & (1 << this.freePieces[i])) == 0) {
+				safe++;
+			}
+		}
+		if(safe == 0) {
+			return this.takeRandomPiece();
+		}
+		int skip = this.random.nextInt(safe);
+		for(int i = 0; ; i++) {
+			if((winning & (1 << this.freePieces[i])) == 0 && skip-- == 0) {
+				int piece = this.freePieces[i];
+				this.freePieces[i] = this.freePieces[--this.numberOfFreePieces];
+				return piece;
+			}
+		}
+	}
+
+	private void removeFreePiece(int piece) {
+		for(int i = 0; i < this.numberOfFreePieces; i++) {
+			if(this.freePieces[i] == piece) {
+				this.freePieces[i] = this.freePieces[--this.numberOfFreePieces];
+				return;
+			}
+		}
+	}
+
+	public void setEpsilon(double epsilon) {
+		this.epsilon = epsilon;
+	}
+
+	//0 plays every game to the end
+	public void setDepth(int depth) {
+		this.depth = depth;
+	}
+
+	public void setRecording(boolean recording) {
+		this.recording = recording;
+	}
+
+	//the cells player placed a piece on in the last game played with recording on
+	public int getRecordedCells(boolean player) {
+		return this.recordedCells[player ? 1 : 0];
+	}
+
+	//the pieces player handed over in the last game played with recording on
+	public int getRecordedPieces(boolean player) {
+		return this.recordedPieces[player ? 1 : 0];
+	}
+
+	public long getRollouts() {
+		return this.rollouts;
+	}
+
+	//rollouts cut short at the depth
+	public long getTruncations() {
+		return this.truncations;
+	}
+
+	//rollouts per second of time actually spent playing them out
+	public double getRolloutsPerSecond() {
+		if(this.rolloutNanos == 0) {
+			return 0;
+		}
+		return this.rollouts * 1e9 / this.rolloutNanos;
+	}
+
+	public void resetStatistics() {
+		this.rollouts = 0;
+		this.rolloutNanos = 0;
+		this.truncations = 0;
+	}
+
+}
@@ -0,0 +1,137 @@
+//how the search picks the child to descend to: the value of a child for the player picking it is its mean score plus a
+//bonus for exploring it, which every policy works out its own way and exploration scales (0 leaves only the mean)
+//scores are in [-1, 1] for the player picking, a draw is 0
+//the policies hold no state, so one instance serves every thread and search
+public interface QuartoSelectionPolicy {
+
+	QuartoSelectionPolicy UCB1 = new Ucb1();
+	QuartoSelectionPolicy UCB1_TUNED = new Ucb1Tuned();
+	QuartoSelectionPolicy PUCT = new Puct();
+
+	//the child has visits playouts (at least 1) with this mean score and this mean squared score, its parent has
+	//parentVisits, prior is the probability the priors give the action leading to the child when usesPriors
+	double getValue(double mean, double squares, int visits, int parentVisits, double prior, double exploration);
+
+	//the search only works out priors for a policy that reads them
+	boolean usesPriors();
+
+	//ucb1, ucb1-tuned or puct
+	static QuartoSelectionPolicy forName(String name) {
+
+		for(QuartoSelectionPolicy policy : new QuartoSelectionPolicy[] {UCB1, UCB1_TUNED, PUCT}) {
+			if(policy.toString().equals(name)) {
+				return policy;
+			}
+		}
+		throw new Error("Unknown selection policy: " + name);
+	}
+
+	//the bonus shrinks with the square root of the child's share of the parent's playouts
+	final class Ucb1 implements QuartoSelectionPolicy {
+
+		private Ucb1() {
+		}
+
+		public double getValue(double mean, double squares, int visits, int parentVisits, double prior, double exploration) {
+			return mean + exploration * Math.sqrt(2 * Math.log(parentVisits) / visits);
+		}
+
+		public boolean usesPriors() {
+			return false;
+		}
+
+		public String toString() {
+			return "ucb1";
+		}
+	}
+
+	//UCB1's bonus assumes every child's scores spread as far as they can, UCB1-Tuned scales it by how far this child's
+	//actually do: its variance plus the uncertainty of that, capped at the largest variance a score in [-1, 1] can have
+	//children that keep ending the same way, such as nearly decided ones, are explored less
+	final class Ucb1Tuned implements QuartoSelectionPolicy {
+
+		private Ucb1Tuned() {
+		}
+
+		public double getValue(double mean, double squares, int visits, int parentVisits, double prior, double exploration) {
+
+			double uncertainty = 2 * Math.log(parentVisits) / visits;
+			double variance = Math.max(0, squares - mean * mean) + 4 * Math.sqrt(uncertainty);
+			return mean + exploration * Math.sqrt(uncertainty * Math.min(1, variance));
+		}
+
+		public boolean usesPriors() {
+			return false;
+		}
+
+		public String toString() {
+			return "ucb1-tuned";
+		}
+	}
+
+	//PUCT: the bonus is shared out by the priors and shrinks with the child's playouts rather than their square root,
+	//so the search sticks to the actions the priors favor until their means fall behind
+	final class Puct implements QuartoSelectionPolicy {
+
+		//scales the bonus for the same exploration as UCB1's, the best of 0.5 to 16 on the positions of QuartoBenchmark
+		//selection, more makes the search spread out too much at short time limits
+		private static final double WEIGHT = 2;
+
+		//the prior weights of actions: placing a piece where it wins, the actions that neither win nor lose at once, and
+		//the blunders, handing over a piece that wins or placing one so that only such pieces are left to hand over
+		private static final float WIN_WEIGHT = 8;
+		private static final float OPEN_WEIGHT = 1;
+		private static final float BLUNDER_WEIGHT = 0.125f;
+
+		private Puct() {
+		}
+
+		public double getValue(double mean, double squares, int visits, int parentVisits, double prior, double exploration) {
+			return mean + exploration * WEIGHT * prior * Math.sqrt(parentVisits) / (1 + visits);
+		}
+
+		public boolean usesPriors() {
+			return true;
+		}
+
+		public String toString() {
+			return "puct";
+		}
+
+		//the priors of the actions in the bit mask for the position on board with piece in hand (-1 when a piece has to be
+		//chosen), indexed by action and adding up to 1, from QuartoBoard's winner masks so they cost a few board updates
+		public static float[] getPriors(QuartoBoard board, int piece, int actions) {
+
+			float[] priors = new float[Integer.SIZE];
+			int allPieces = (int) ((1L << board.getNumberOfPieces()) - 1);
+			int columns = board.getNumberOfColumns();
+			float total = 0;
+
+			int winningPieces = piece == -1 ? board.getWinningPieces() : 0;
+			int winningCells = piece == -1 ? 0 : board.getWinningCells(piece);
+			for(int bits = actions; bits != 0; bits &= bits - 1) {
+
+				int action = Integer.numberOfTrailingZeros(bits);
+				float weight;
+				if(piece == -1) {
+					weight = (winningPieces & (1 << action)) != 0 ? BLUNDER_WEIGHT : OPEN_WEIGHT;
+				} else if((winningCells & (1 << action)) != 0) {
+					weight = WIN_WEIGHT;
+				} else {
+
+					board.insertPieceOnBoard(action / columns, action % columns, piece);
+					int freePieces = ~board.getPiecesInPlayMask() & allPieces;
+					weight = freePieces != 0 && (freePieces & ~board.getWinningPieces()) == 0 ? BLUNDER_WEIGHT : OPEN_WEIGHT;
+					board.removePieceFromBoard(action / columns, action % columns);
+				}
+				priors[action] = weight;
+				total += weight;
+			}
+			for(int bits = actions; bits != 0; bits &= bits - 1) {
+				priors[Integer.numberOfTrailingZeros(bits)] /= total;
+			}
+			return priors;
+		}
+	}
+
+}
@@ -42,45 +42,13 @@ public class QuartoSemiRandomAgent extends QuartoAgent {
         //String BinaryString = String.format("%5s", Integer.toBinaryString(pieceID)).replace(' ', '0');
 
         this.startTimer();
-        boolean skip = false;
-        for (int i = 0; i < this.quartoBoard.getNumberOfPieces(); i++) {
-            skip = false;
-            if (!this.quartoBoard.isPieceOnBoard(i)) {
-                for (int row = 0; row < this.quartoBoard.getNumberOfRows(); row++) {
-                    for (int col = 0; col < this.quartoBoard.getNumberOfColumns(); col++) {
-                        if (!this.quartoBoard.isSpaceTaken(row, col)) {
-                            QuartoBoard copyBoard = new QuartoBoard(this.quartoBoard);
-                            copyBoard.insertPieceOnBoard(row, col, i);
-                            if (copyBoard.checkRow(row) || copyBoard.checkColumn(col) || copyBoard.checkDiagonals()) {
-                                skip = true;
-                                break;
-                            }
-                        }
-                    }
-                    if (skip) {
-                        break;
-                    }
-
-                }
-                if (!skip) {
-                    return String.format("%5s", Integer.toBinaryString(i)).replace(' ', '0');
-                }
-
-            }
-            if (this.getMillisecondsFromTimer() > (this.timeLimitForResponse - COMMUNICATION_DELAY)) {
-                //handle for when we are over some imposed time limit (make sure you account for communication delay)
-            }
-            String message = null;
-            //for every other i, check if there is a missed message
-            /*
-            if (i % 2 == 0 && ((message = this.checkForMissedServerMessages()) != null)) {
-                //the oldest missed message is stored in the variable message.
-                //You can see if any more missed messages are in the socket by running this.checkForMissedServerMessages() again
-            }
-            */
+        //the board's threat index knows every piece that wins on some free cell, the first other one is handed over
+        int pieceMask = (int) ((1L << this.quartoBoard.getNumberOfPieces()) - 1);
+        int safePieces = ~this.quartoBoard.getWinningPieces() & ~this.quartoBoard.getPiecesInPlayMask() & pieceMask;
+        if (safePieces != 0) {
+            return String.format("%5s", Integer.toBinaryString(Integer.numberOfTrailingZeros(safePieces))).replace(' ', '0');
         }
 
-
         //if we don't find a piece in the above code just grab the first random piece
         int pieceId = this.quartoBoard.chooseRandomPieceNotPlayed(100);
         String BinaryString = String.format("%5s", Integer.toBinaryString(pieceId)).replace(' ', '0');
@@ -98,28 +66,15 @@ public class QuartoSemiRandomAgent extends QuartoAgent {
 
         // [This is where you should insert the required code for Assignment 1.]    
  
-        for(int rows = 0; rows < this.quartoBoard.getNumberOfRows(); rows++){
-
-            for(int columns = 0; columns < this.quartoBoard.getNumberOfColumns(); columns++){
+        int winningCells = this.quartoBoard.getWinningCells(pieceID);
+        if(winningCells != 0){
 
-                if(this.quartoBoard.getPieceOnPosition(rows, columns) == null){
-
-                    QuartoBoard winningQuartoBoard = new QuartoBoard(this.quartoBoard);
-
-                    winningQuartoBoard.insertPieceOnBoard(rows, columns, pieceID);
-
-                    if(winningQuartoBoard.checkRow(rows) || winningQuartoBoard.checkColumn(columns) || winningQuartoBoard.checkDiagonals()){
-
-                        //return the winning move if one is found
-                        return rows + "," + columns;
-                    }
-                }
-            }
+            //return the winning move if one is found
+            int cell = Integer.numberOfTrailingZeros(winningCells);
+            return (cell / this.quartoBoard.getNumberOfColumns()) + "," + (cell % this.quartoBoard.getNumberOfColumns());
         }
         // If no winning move is found in the above code, then return a random (unoccupied) square
-        int[] move = new int[2];
-        QuartoBoard copyBoard = new QuartoBoard(this.quartoBoard);
-        move = copyBoard.chooseRandomPositionNotPlayed(100);
+        int[] move = this.quartoBoard.chooseRandomPositionNotPlayed(100);
 
         return move[0] + "," + move[1];
     }
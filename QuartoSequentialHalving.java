@@ -0,0 +1,82 @@
+//sequential halving over the actions at the root of a search: the in-tree policies keep sampling the children that look
+//best, which is right below the root, but at the root only the final decision counts, so the playouts are better spent
+//on telling the candidates apart
+//the search's budget is split evenly over rounds, one for every halving of the candidates: a round samples its candidates
+//in turn, so equally often, then the better half by mean score goes on to the next one
+//a search has a deadline rather than a number of playouts, and the rate playouts run at changes too much as the tree
+//grows to plan rounds by counting them, so every round gets its share of the time left instead
+//actions are the root's child slot indexes, threads sharing a tree share its allocator
+public class QuartoSequentialHalving {
+
+	private final int[] candidates;
+	private int numberOfCandidates;
+	//samples handed out in the running round and the System.nanoTime it ends at
+	private long samples;
+	private long roundEnd;
+	private boolean started;
+	private final long endTime;
+
+	public QuartoSequentialHalving(int numberOfActions, long endTime) {
+
+		this.candidates = new int[numberOfActions];
+		for(int i = 0; i < numberOfActions; i++) {
+			this.candidates[i] = i;
+		}
+		this.numberOfCandidates = numberOfActions;
+		this.endTime = endTime;
+	}
+
+	//the action to sample next, -1 when the round is over at the System.nanoTime now and nextRound has to be called first
+	public synchronized int next(long now) {
+
+		if(this.numberOfCandidates > 1 && (!this.started || now - this.roundEnd >= 0)) {
+			return -1;
+		}
+		return this.candidates[(int) (this.samples++ % this.numberOfCandidates)];
+	}
+
+	//drops the worse half of the candidates by values, the mean scores of the actions for the player at the root, unless
+	//no round has been played yet, and starts the next round, unless another thread has already done so
+	public synchronized void nextRound(double[] values, long now) {
+
+		if(this.started && now - this.roundEnd < 0) {
+			return;
+		}
+		if(this.started && this.numberOfCandidates > 1) {
+
+			//insertion sort, best first, there are never more than a few dozen
+			for(int i = 1; i < this.numberOfCandidates; i++) {
+				int candidate = this.candidates[i];
+				int j = i;
+				for(; j > 0 && values[this.candidates[j - 1]] < values[candidate]; j--) {
+					this.candidates[j] = this.candidates[j - 1];
+				}
+				this.candidates[j] = candidate;
+			}
+			this.numberOfCandidates = (this.numberOfCandidates + 1) / 2;
+		}
+		this.started = true;
+		this.samples = 0;
+		this.roundEnd = now + Math.max(0, this.endTime - now) / getRoundsLeft();
+	}
+
+	//rounds until one candidate is left, counting the one about to start
+	private int getRoundsLeft() {
+		return Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(this.numberOfCandidates - 1));
+	}
+
+	public synchronized int getNumberOfCandidates() {
+		return this.numberOfCandidates;
+	}
+
+	public synchronized boolean isCandidate(int action) {
+
+		for(int i = 0; i < this.numberOfCandidates; i++) {
+			if(this.candidates[i] == action) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -92,7 +92,7 @@ public class QuartoServer {
 			//add piece to board
 			this.quartoBoard.insertPieceOnBoard(move[0], move[1], pieceID);
 
-			if(this.checkIfGameIsWon()) {
+			if(this.checkIfGameIsWon(move[0], move[1])) {
 				this.gameServer.writeToAllPlayers(GAME_OVER_HEADER + "player " + playerOne + " wins");
 				this.quartoBoard.printBoardState();
 				break;
@@ -190,35 +190,26 @@ public class QuartoServer {
 		return true;
 	}
 
-	//loop through board and see if the game is in a won state
-	private boolean checkIfGameIsWon() {
-
-		//loop through rows
-		for(int i = 0; i < NUMBER_OF_ROWS; i++) {
-			//gameIsWon = this.quartoBoard.checkRow(i);
-			if (this.quartoBoard.checkRow(i)) {
-				System.out.println("Win via row: " + (i) + " (zero-indexed)");
-				return true;
-			}
+	//see if the piece just placed on [row,column] put the game in a won state
+	//only the row, column and diagonals through that cell can have been completed by it
+	private boolean checkIfGameIsWon(int row, int column) {
 
+		if (!this.quartoBoard.isWinningMove(row, column)) {
+			return false;
 		}
-		//loop through columns
-		for(int i = 0; i < NUMBER_OF_COLUMNS; i++) {
-			//gameIsWon = this.quartoBoard.checkColumn(i);
-			if (this.quartoBoard.checkColumn(i)) {
-				System.out.println("Win via column: " + (i) + " (zero-indexed)");
-				return true;
-			}
 
+		if (this.quartoBoard.checkRow(row)) {
+			System.out.println("Win via row: " + (row) + " (zero-indexed)");
+			return true;
 		}
 
-		//check Diagonals
-		if (this.quartoBoard.checkDiagonals()) {
-			System.out.println("Win via diagonal");
+		if (this.quartoBoard.checkColumn(column)) {
+			System.out.println("Win via column: " + (column) + " (zero-indexed)");
 			return true;
 		}
 
-		return false;
+		System.out.println("Win via diagonal");
+		return true;
 	}
 
 	//loop through board and see if the game is in a won state
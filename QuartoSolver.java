@@ -0,0 +1,275 @@
+//solves Quarto positions exactly with negamax alpha-beta search, meant for the endgame
+//a turn is placing the piece in hand and then choosing the piece for the opponent, both by the same player,
+//so scores only change sign when a piece is handed over: 1 is a win for the player to act, -1 a loss and 0 a draw
+//iterative deepening limits how many pieces may still be placed, anything past the limit counts as a draw:
+//a win or a loss within the limit is proven for good, 0 only once the limit reaches the end of the game
+//the transposition table keeps the score of every position searched with its bound, its limit and the best action
+//an instance is not thread safe, its table is kept between solves
+public class QuartoSolver {
+
+	public static final int WIN = 1;
+	public static final int DRAW = 0;
+	public static final int LOSS = -1;
+
+	//how a stored score relates to the real one of its depth limited search
+	private static final int EXACT = 0;
+	private static final int LOWER_BOUND = 1;
+	private static final int UPPER_BOUND = 2;
+
+	//table entries pack the score + 1, the bound, the depth and the best action plus one (0 for none)
+	private static final int BOUND_SHIFT = 2;
+	private static final int DEPTH_SHIFT = 4;
+	private static final int ACTION_SHIFT = 10;
+	private static final int FIELD_MASK = 0x3F;
+
+	//the clock is read once every this many positions
+	private static final int CLOCK_CHECK_INTERVAL = 1024;
+
+	private final long[] keys;
+	private final int[] entries;
+	private final int indexMask;
+
+	private QuartoBoard board;
+	private int allCells;
+	private int allPieces;
+	private long deadline;
+	private boolean timeUp;
+	private long positions;
+
+	//the result of the last solve
+	private int value;
+	private int bestAction;
+	private int rootAction;
+
+	public QuartoSolver(int tableSize) {
+		int size = Integer.highestOneBit(Math.max(1, tableSize));
+		this.keys = new long[size];
+		this.entries = new int[size];
+		this.indexMask = size - 1;
+	}
+
+	//solves the position with piece in hand (-1 when a piece has to be chosen) until the System.nanoTime deadline
+	//returns true when the score is proven, getValue and getBestAction then hold it and the action that gets it
+	//(the cell index to place piece on, or the piece to hand over)
+	public boolean solve(QuartoBoard board, int piece, long deadline) {
+
+		this.board = new QuartoBoard(board);
+		this.allCells = (int) ((1L << (board.getNumberOfRows() * board.getNumberOfColumns())) - 1);
+		this.allPieces = (int) ((1L << board.getNumberOfPieces()) - 1);
+		this.deadline = deadline;
+		this.timeUp = false;
+		this.positions = 0;
+
+		int emptyCells = Integer.bitCount(~board.getOccupiedCellMask() & this.allCells);
+		if(emptyCells == 0) {
+			return false;
+		}
+		for(int depth = 1; depth <= emptyCells; depth++) {
+
+			//two null window searches: is it a win, and if not, is it a loss
+			int score = this.search(piece, depth, DRAW, WIN);
+			if(score < WIN && !this.timeUp) {
+				score = this.search(piece, depth, LOSS, DRAW);
+			}
+			if(this.timeUp) {
+				return false;
+			}
+			this.value = Math.max(LOSS, Math.min(WIN, score));
+			this.bestAction = this.rootAction;
+			//past the limit counts as a draw, so only a win or a loss is proven before the last limit
+			if(this.value != DRAW) {
+				return true;
+			}
+		}
+		return true;
+	}
+
+	private int search(int piece, int depth, int alpha, int beta) {
+		this.rootAction = -1;
+		return piece < 0 ? this.choose(depth, alpha, beta, true) : this.place(piece, depth, alpha, beta, true, false);
+	}
+
+	public int getValue() {
+		return this.value;
+	}
+
+	public int getBestAction() {
+		return this.bestAction;
+	}
+
+	//positions visited by the last solve
+	public long getPositions() {
+		return this.positions;
+	}
+
+	//the player to act places piece within depth placements of the end of the search
+	//safe is set when piece is known not to win anywhere
+	private int place(int piece, int depth, int alpha, int beta, boolean root, boolean safe) {
+
+		if(this.isTimeUp()) {
+			return DRAW;
+		}
+		int columns = this.board.getNumberOfColumns();
+		int freeCells = ~this.board.getOccupiedCellMask() & this.allCells;
+
+		//a win on the spot needs no search, and it is checked even past the limit since it is certain
+		int winningCells = safe ? 0 : this.board.getWinningCells(piece);
+		if(winningCells != 0) {
+			if(root) {
+				this.rootAction = Integer.numberOfTrailingZeros(winningCells);
+			}
+			return WIN;
+		}
+		if(depth == 0) {
+			return DRAW;
+		}
+
+		long key = this.board.getZobristHash() ^ QuartoBoard.getZobristHandKey(piece);
+		int originalAlpha = alpha;
+		int tableAction = -1;
+		int entry = this.probe(key);
+		if(entry != 0) {
+			tableAction = ((entry >>> ACTION_SHIFT) & FIELD_MASK) - 1;
+			if(!root) {
+				int score = this.cutoff(entry, depth, alpha, beta);
+				if(score != Integer.MIN_VALUE) {
+					return score;
+				}
+			}
+		}
+
+		int bestScore = LOSS - 1;
+		int bestCell = -1;
+		//the table's best cell first, then the others in order
+		for(int i = -1; i < Integer.SIZE && alpha < beta; i++) {
+
+			int cell = i == -1 ? tableAction : i;
+			if(cell < 0 || (freeCells & (1 << cell)) == 0 || (i != -1 && cell == tableAction)) {
+				continue;
+			}
+			this.board.insertPieceOnBoard(cell / columns, cell % columns, piece);
+			int score = this.board.checkIfBoardIsFull() ? DRAW : this.choose(depth - 1, alpha, beta, false);
+			this.board.removePieceFromBoard(cell / columns, cell % columns);
+			if(this.timeUp) {
+				return DRAW;
+			}
+			if(score > bestScore) {
+				bestScore = score;
+				bestCell = cell;
+				if(root) {
+					this.rootAction = cell;
+				}
+			}
+			alpha = Math.max(alpha, score);
+		}
+		this.store(key, bestScore, originalAlpha, beta, depth, bestCell);
+		return bestScore;
+	}
+
+	//the player who just placed a piece chooses the one the opponent places next
+	private int choose(int depth, int alpha, int beta, boolean root) {
+
+		int freePieces = ~this.board.getPiecesInPlayMask() & this.allPieces;
+		if(freePieces == 0) {
+			return DRAW;
+		}
+		//a piece that wins somewhere loses on the spot, so only the others are searched
+		int safePieces = freePieces & ~this.board.getWinningPieces();
+		if(safePieces == 0) {
+			if(root) {
+				this.rootAction = Integer.numberOfTrailingZeros(freePieces);
+			}
+			return LOSS;
+		}
+		freePieces = safePieces;
+
+		long key = this.board.getZobristHash() ^ QuartoBoard.getZobristHandKey(-1);
+		int originalAlpha = alpha;
+		int tableAction = -1;
+		int entry = this.probe(key);
+		if(entry != 0) {
+			tableAction = ((entry >>> ACTION_SHIFT) & FIELD_MASK) - 1;
+			if(!root) {
+				int score = this.cutoff(entry, depth, alpha, beta);
+				if(score != Integer.MIN_VALUE) {
+					return score;
+				}
+			}
+		}
+
+		int bestScore = LOSS - 1;
+		int bestPiece = -1;
+		for(int i = -1; i < Integer.SIZE && alpha < beta; i++) {
+
+			int piece = i == -1 ? tableAction : i;
+			if(piece < 0 || (freePieces & (1 << piece)) == 0 || (i != -1 && piece == tableAction)) {
+				continue;
+			}
+			int score = -this.place(piece, depth, -beta, -alpha, false, true);
+			if(this.timeUp) {
+				return DRAW;
+			}
+			if(score > bestScore) {
+				bestScore = score;
+				bestPiece = piece;
+				if(root) {
+					this.rootAction = piece;
+				}
+			}
+			alpha = Math.max(alpha, score);
+		}
+		this.store(key, bestScore, originalAlpha, beta, depth, bestPiece);
+		return bestScore;
+	}
+
+	private boolean isTimeUp() {
+		if(++this.positions % CLOCK_CHECK_INTERVAL == 0 && System.nanoTime() - this.deadline >= 0) {
+			this.timeUp = true;
+		}
+		return this.timeUp;
+	}
+
+	//the packed entry for key, 0 when there is none
+	private int probe(long key) {
+		int index = (int) key & this.indexMask;
+		return this.keys[index] == key ? this.entries[index] : 0;
+	}
+
+	//a score that settles the position without searching it, Integer.MIN_VALUE when the entry does not
+	private int cutoff(int entry, int depth, int alpha, int beta) {
+
+		int score = (entry & 3) - 1;
+		int bound = (entry >>> BOUND_SHIFT) & 3;
+		int entryDepth = (entry >>> DEPTH_SHIFT) & FIELD_MASK;
+
+		//wins and losses found under any limit are real
+		if(score == WIN && bound != UPPER_BOUND) {
+			return WIN;
+		}
+		if(score == LOSS && bound != LOWER_BOUND) {
+			return LOSS;
+		}
+		//a draw only holds as far as the limit it was searched under
+		if(entryDepth < depth) {
+			return Integer.MIN_VALUE;
+		}
+		if(bound == EXACT || (bound == LOWER_BOUND && score >= beta) || (bound == UPPER_BOUND && score <= alpha)) {
+			return score;
+		}
+		return Integer.MIN_VALUE;
+	}
+
+	private void store(long key, int score, int alpha, int beta, int depth, int action) {
+
+		int bound = EXACT;
+		if(score <= alpha) {
+			bound = UPPER_BOUND;
+		} else if(score >= beta) {
+			bound = LOWER_BOUND;
+		}
+		int index = (int) key & this.indexMask;
+		this.keys[index] = key;
+		this.entries[index] = (score + 1) | (bound << BOUND_SHIFT) | (depth << DEPTH_SHIFT) | ((action + 1) << ACTION_SHIFT);
+	}
+
+}
@@ -0,0 +1,385 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+//finds equivalent Quarto positions: getCanonicalHash maps a position (the board plus the piece in hand, if any)
+//to a hash shared by every position equivalent to it, getDistinctMoves and getDistinctPieces drop the actions
+//that lead to positions equivalent to ones reached by other actions
+//two positions are equivalent when one turns into the other by
+//  moving the cells so that every line stays a line: rotations, reflections and, on a 5x5 board,
+//  swapping the outer and inner rows and columns in pairs, 32 transforms in all
+//  permuting the five attributes of every piece
+//  flipping any of the attributes
+//instead of trying all 32 * 120 * 32 elements, every cell transform is tried once: the flips are fixed by making
+//the first piece 0 and the permutation by sorting the attribute columns, which gives the smallest encoding for that transform
+//getCanonicalTransform tells the element that took a position to its representative, so an action stored for the
+//representative can be mapped back to the position (fromCanonicalCell, fromCanonicalPiece)
+//instances never change after they are built and can be shared between threads, the working arrays of the queries are
+//kept per thread so the search can canonicalize a position for every node it expands without allocating
+public final class QuartoSymmetry {
+
+	private static volatile QuartoSymmetry shared;
+	private static final int ATTRIBUTES = Integer.bitCount(QuartoBoard.ATTRIBUTE_MASK);
+	//ATTRIBUTE_PERMUTATIONS[p][pieceID] is pieceID with its attributes permuted by the p-th permutation
+	private static final int[][] ATTRIBUTE_PERMUTATIONS = createAttributePermutations();
+	//sized for the largest board QuartoBoard packs, so one set serves every instance
+	private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+	//a group element packs the cell transform, then the attribute flip, then for every attribute the one it moves to
+	private static final int TRANSFORM_BITS = 8;
+	private static final int FLIP_SHIFT = TRANSFORM_BITS;
+	private static final int PERMUTATION_SHIFT = FLIP_SHIFT + ATTRIBUTES;
+	private static final int ATTRIBUTE_BITS = 3;
+
+	private final int numberOfRows;
+	private final int numberOfColumns;
+	private final int numberOfCells;
+
+	//cellTransforms[t][cell] is the cell that cell moves to under transform t, inverseTransforms undoes it
+	private final int[][] cellTransforms;
+	private final int[][] inverseTransforms;
+
+	public QuartoSymmetry(int numberOfRows, int numberOfColumns) {
+		this.numberOfRows = numberOfRows;
+		this.numberOfColumns = numberOfColumns;
+		this.numberOfCells = numberOfRows * numberOfColumns;
+		this.cellTransforms = createCellTransforms(numberOfRows, numberOfColumns);
+		if(this.cellTransforms.length > 1 << TRANSFORM_BITS) {
+			throw new Error("too many cell transforms to pack");
+		}
+		this.inverseTransforms = new int[this.cellTransforms.length][this.numberOfCells];
+		for(int t = 0; t < this.cellTransforms.length; t++) {
+			for(int cell = 0; cell < this.numberOfCells; cell++) {
+				this.inverseTransforms[t][this.cellTransforms[t][cell]] = cell;
+			}
+		}
+	}
+
+	//building the transforms tries every row and column permutation, so one instance is kept for the board size in use
+	public static QuartoSymmetry forBoard(QuartoBoard board) {
+		QuartoSymmetry symmetry = shared;
+		if(symmetry == null || symmetry.numberOfRows != board.getNumberOfRows() || symmetry.numberOfColumns != board.getNumberOfColumns()) {
+			symmetry = new QuartoSymmetry(board.getNumberOfRows(), board.getNumberOfColumns());
+			shared = symmetry;
+		}
+		return symmetry;
+	}
+
+	public int getNumberOfCellTransforms() {
+		return this.cellTransforms.length;
+	}
+
+	//the cell that cell moves to under transform t
+	public int transformCell(int t, int cell) {
+		return this.cellTransforms[t][cell];
+	}
+
+	//the Zobrist hash (as QuartoBoard.getZobristHash() ^ QuartoBoard.getZobristHandKey()) of the representative of the position
+	//pieceInHand is -1 when the player to act still has to choose a piece
+	//the element that took the position to the representative is kept for getCanonicalTransform
+	public long getCanonicalHash(QuartoBoard board, int pieceInHand) {
+
+		Scratch scratch = SCRATCH.get();
+		int occupied = board.getOccupiedCellMask();
+		int[] cellPieces = scratch.cellPieces;
+		for(int bits = occupied; bits != 0; bits &= bits - 1) {
+			int cell = Integer.numberOfTrailingZeros(bits);
+			cellPieces[cell] = board.getPieceIDOnCell(cell);
+		}
+
+		//the encoding is the occupied cells, then the piece in hand and the pieces in cell order, smaller is better
+		int bestOccupied = -1;
+		int bestElement = 0;
+		int[] best = scratch.best;
+		int[] pieces = scratch.pieces;
+		long[] columns = scratch.columns;
+		int numberOfPieces = 0;
+
+		for(int t = 0; t < this.cellTransforms.length; t++) {
+
+			int[] transform = this.cellTransforms[t];
+			int transformed = 0;
+			for(int bits = occupied; bits != 0; bits &= bits - 1) {
+				transformed |= 1 << transform[Integer.numberOfTrailingZeros(bits)];
+			}
+			//compared as unsigned so a piece on the highest cell still sorts last
+			if(bestOccupied != -1 && Integer.compareUnsigned(transformed, bestOccupied) > 0) {
+				continue;
+			}
+
+			numberOfPieces = 0;
+			if(pieceInHand >= 0) {
+				pieces[numberOfPieces++] = pieceInHand;
+			}
+			int[] inverse = this.inverseTransforms[t];
+			for(int bits = transformed; bits != 0; bits &= bits - 1) {
+				pieces[numberOfPieces++] = cellPieces[inverse[Integer.numberOfTrailingZeros(bits)]];
+			}
+			int attributes = normalizeAttributes(pieces, numberOfPieces, columns);
+
+			if(bestOccupied == -1 || transformed != bestOccupied || Arrays.compare(pieces, 0, numberOfPieces, best, 0, numberOfPieces) < 0) {
+				bestOccupied = transformed;
+				bestElement = t | attributes << FLIP_SHIFT;
+				System.arraycopy(pieces, 0, best, 0, numberOfPieces);
+			}
+		}
+		scratch.element = bestElement;
+
+		int next = 0;
+		long hash = QuartoBoard.getZobristHandKey(pieceInHand >= 0 ? best[next++] : -1);
+		for(int bits = bestOccupied; bits != 0; bits &= bits - 1) {
+			hash ^= QuartoBoard.getZobristKey(Integer.numberOfTrailingZeros(bits), best[next++]);
+		}
+		return hash;
+	}
+
+	//the element that took the position of this thread's last getCanonicalHash call to its representative
+	public int getCanonicalTransform() {
+		return SCRATCH.get().element;
+	}
+
+	//the cell that cell is on in the representative, for the element getCanonicalTransform gave
+	public int toCanonicalCell(int element, int cell) {
+		return this.cellTransforms[element & ((1 << TRANSFORM_BITS) - 1)][cell];
+	}
+
+	public int fromCanonicalCell(int element, int cell) {
+		return this.inverseTransforms[element & ((1 << TRANSFORM_BITS) - 1)][cell];
+	}
+
+	//the piece that pieceID is in the representative
+	public static int toCanonicalPiece(int element, int pieceID) {
+
+		pieceID ^= (element >>> FLIP_SHIFT) & QuartoBoard.ATTRIBUTE_MASK;
+		int piece = 0;
+		for(int bit = 0; bit < ATTRIBUTES; bit++) {
+			piece |= ((pieceID >>> bit) & 1) << getAttributeImage(element, bit);
+		}
+		return piece;
+	}
+
+	public static int fromCanonicalPiece(int element, int pieceID) {
+
+		int piece = 0;
+		for(int bit = 0; bit < ATTRIBUTES; bit++) {
+			piece |= ((pieceID >>> getAttributeImage(element, bit)) & 1) << bit;
+		}
+		return piece ^ ((element >>> FLIP_SHIFT) & QuartoBoard.ATTRIBUTE_MASK);
+	}
+
+	private static int getAttributeImage(int element, int bit) {
+		return (element >>> (PERMUTATION_SHIFT + ATTRIBUTE_BITS * bit)) & ((1 << ATTRIBUTE_BITS) - 1);
+	}
+
+	//free cells to try for the piece in hand, as a mask with one cell out of every group of equivalent ones
+	public int getDistinctMoves(QuartoBoard board, int pieceInHand) {
+		int free = ~board.getOccupiedCellMask() & (int) ((1L << this.numberOfCells) - 1);
+		return this.removeEquivalent(board, pieceInHand, free, true);
+	}
+
+	//pieces left to hand over, as a mask with one piece out of every group of equivalent ones
+	public int getDistinctPieces(QuartoBoard board) {
+		int free = ~board.getPiecesInPlayMask() & (int) ((1L << board.getNumberOfPieces()) - 1);
+		return this.removeEquivalent(board, -1, free, false);
+	}
+
+	//goes through every group element that leaves the position as it is, each one maps a move (or a piece) to an equivalent one,
+	//so of every candidate only the smallest one it can be mapped to is kept
+	//elements are a cell transform, an attribute permutation and then flips, the flips follow from where the first piece goes
+	private int removeEquivalent(QuartoBoard board, int pieceInHand, int candidates, boolean cells) {
+
+		int occupied = board.getOccupiedCellMask();
+		int[] cellPieces = SCRATCH.get().cellPieces;
+		for(int bits = occupied; bits != 0; bits &= bits - 1) {
+			int cell = Integer.numberOfTrailingZeros(bits);
+			cellPieces[cell] = board.getPieceIDOnCell(cell);
+		}
+		int firstCell = Integer.numberOfTrailingZeros(occupied);
+		int keep = candidates;
+
+		for(int t = 0; t < this.cellTransforms.length; t++) {
+
+			int[] transform = this.cellTransforms[t];
+			int transformed = 0;
+			for(int bits = occupied; bits != 0; bits &= bits - 1) {
+				transformed |= 1 << transform[Integer.numberOfTrailingZeros(bits)];
+			}
+			if(transformed != occupied) {
+				continue;
+			}
+
+			for(int[] permutation : ATTRIBUTE_PERMUTATIONS) {
+
+				//with nothing on the board and nothing in hand every flip leaves the position as it is
+				int flip = 0;
+				int flips = 1;
+				if(pieceInHand >= 0) {
+					flip = pieceInHand ^ permutation[pieceInHand];
+				} else if(occupied != 0) {
+					flip = cellPieces[transform[firstCell]] ^ permutation[cellPieces[firstCell]];
+				} else {
+					flips = QuartoBoard.ATTRIBUTE_MASK + 1;
+				}
+
+				boolean stabilizes = true;
+				for(int bits = occupied; bits != 0 && stabilizes; bits &= bits - 1) {
+					int cell = Integer.numberOfTrailingZeros(bits);
+					stabilizes = (permutation[cellPieces[cell]] ^ flip) == cellPieces[transform[cell]];
+				}
+				if(!stabilizes) {
+					continue;
+				}
+
+				for(; flips > 0; flips--, flip++) {
+					for(int bits = keep; bits != 0; bits &= bits - 1) {
+						int candidate = Integer.numberOfTrailingZeros(bits);
+						int image = cells ? transform[candidate] : permutation[candidate] ^ flip;
+						if(image < candidate) {
+							keep &= ~(1 << candidate);
+						}
+					}
+				}
+				//the attributes do not move cells, one permutation is enough for this transform
+				if(cells) {
+					break;
+				}
+			}
+		}
+		return keep;
+	}
+
+	//applies the attribute flips and permutation that make the piece sequence smallest
+	//the first piece becomes 0, then reading every attribute down the sequence as a binary number,
+	//the attribute with the smallest number becomes the most significant bit and so on
+	//the columns are then written back as the pieces, so nothing but the given arrays is touched
+	//returns the flip and the permutation packed as in a group element, without the cell transform
+	private static int normalizeAttributes(int[] pieces, int numberOfPieces, long[] columns) {
+
+		int flip = numberOfPieces == 0 ? 0 : pieces[0];
+		//every column carries the attribute it was read from in its lowest bits while it is sorted
+		for(int bit = 0; bit < ATTRIBUTES; bit++) {
+			columns[bit] = 0;
+		}
+		for(int i = 0; i < numberOfPieces; i++) {
+			int piece = pieces[i] ^ flip;
+			for(int bit = 0; bit < ATTRIBUTES; bit++) {
+				columns[bit] = (columns[bit] << 1) | ((piece >>> bit) & 1);
+			}
+		}
+		for(int bit = 0; bit < ATTRIBUTES; bit++) {
+			columns[bit] = columns[bit] << ATTRIBUTE_BITS | bit;
+		}
+		//insertion sort, there are only five attributes and the order of equal columns does not matter
+		for(int i = 1; i < ATTRIBUTES; i++) {
+			long column = columns[i];
+			int j = i;
+			while(j > 0 && columns[j - 1] > column) {
+				columns[j] = columns[j - 1];
+				j--;
+			}
+			columns[j] = column;
+		}
+		int attributes = flip;
+		for(int k = 0; k < ATTRIBUTES; k++) {
+			int bit = (int) (columns[k] & ((1 << ATTRIBUTE_BITS) - 1));
+			attributes |= (ATTRIBUTES - 1 - k) << (PERMUTATION_SHIFT - FLIP_SHIFT + ATTRIBUTE_BITS * bit);
+			columns[k] >>>= ATTRIBUTE_BITS;
+		}
+
+		//the smallest column becomes the most significant bit, the last row is the lowest bit of every column
+		for(int i = numberOfPieces - 1; i >= 0; i--) {
+			int piece = 0;
+			for(int k = 0; k < ATTRIBUTES; k++) {
+				piece = (piece << 1) | (int) (columns[k] & 1);
+				columns[k] >>>= 1;
+			}
+			pieces[i] = piece;
+		}
+		return attributes;
+	}
+
+	//the working arrays of one thread: the piece on every occupied cell, and the encodings being built and the best so far,
+	//the piece in hand and one piece per cell, and the element of its last canonical hash
+	private static final class Scratch {
+
+		private final int[] cellPieces = new int[Integer.SIZE];
+		private final int[] best = new int[Integer.SIZE + 1];
+		private final int[] pieces = new int[Integer.SIZE + 1];
+		private final long[] columns = new long[ATTRIBUTES];
+		private int element;
+	}
+
+	//every way of permuting the rows and the columns (and, on a square board, transposing) that keeps the set of lines
+	private static int[][] createCellTransforms(int numberOfRows, int numberOfColumns) {
+
+		int[] lines = QuartoBoard.createLineCells(numberOfRows, numberOfColumns);
+		Arrays.sort(lines);
+		int[][] rowPermutations = createPermutations(numberOfRows);
+		int[][] columnPermutations = createPermutations(numberOfColumns);
+		ArrayList<int[]> transforms = new ArrayList<int[]>();
+
+		for(int transpose = 0; transpose < (numberOfRows == numberOfColumns ? 2 : 1); transpose++) {
+			for(int[] rowPermutation : rowPermutations) {
+				for(int[] columnPermutation : columnPermutations) {
+
+					int[] transform = new int[numberOfRows * numberOfColumns];
+					for(int row = 0; row < numberOfRows; row++) {
+						for(int column = 0; column < numberOfColumns; column++) {
+							int newRow = transpose == 0 ? rowPermutation[row] : columnPermutation[column];
+							int newColumn = transpose == 0 ? columnPermutation[column] : rowPermutation[row];
+							transform[row * numberOfColumns + column] = newRow * numberOfColumns + newColumn;
+						}
+					}
+					if(keepsLines(transform, lines)) {
+						transforms.add(transform);
+					}
+				}
+			}
+		}
+		return transforms.toArray(new int[transforms.size()][]);
+	}
+
+	private static boolean keepsLines(int[] transform, int[] sortedLines) {
+		for(int line : sortedLines) {
+			int image = 0;
+			for(int bits = line; bits != 0; bits &= bits - 1) {
+				image |= 1 << transform[Integer.numberOfTrailingZeros(bits)];
+			}
+			if(Arrays.binarySearch(sortedLines, image) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int[][] createAttributePermutations() {
+		int[][] permutations = createPermutations(ATTRIBUTES);
+		int[][] tables = new int[permutations.length][QuartoBoard.ATTRIBUTE_MASK + 1];
+		for(int p = 0; p < permutations.length; p++) {
+			for(int pieceID = 0; pieceID < tables[p].length; pieceID++) {
+				for(int bit = 0; bit < ATTRIBUTES; bit++) {
+					tables[p][pieceID] |= ((pieceID >>> bit) & 1) << permutations[p][bit];
+				}
+			}
+		}
+		return tables;
+	}
+
+	private static int[][] createPermutations(int n) {
+		ArrayList<int[]> permutations = new ArrayList<int[]>();
+		addPermutations(new int[n], 0, 0, permutations);
+		return permutations.toArray(new int[permutations.size()][]);
+	}
+
+	private static void addPermutations(int[] permutation, int index, int used, ArrayList<int[]> permutations) {
+		if(index == permutation.length) {
+			permutations.add(permutation.clone());
+			return;
+		}
+		for(int i = 0; i < permutation.length; i++) {
+			if((used & (1 << i)) == 0) {
+				permutation[index] = i;
+				addPermutations(permutation, index + 1, used | (1 << i), permutations);
+			}
+		}
+	}
+
+}
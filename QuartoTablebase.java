@@ -0,0 +1,315 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//solved endgame positions read from a memory-mapped file, for the search to look its root position up in
+//every position with up to 25 empty cells can not be enumerated (with one empty cell alone there are 25 * 32! / 8! boards),
+//so the table holds the positions with at most getMaximumEmptyCells empty cells reached in many games of safe random play,
+//each one solved exactly by QuartoSolver
+//positions are keyed by their canonical hash (QuartoSymmetry), so one entry serves every equivalent position, and the best
+//action is stored for the representative and mapped back to the position looked up; a lookup only reads the mapping and
+//the per-thread arrays of QuartoSymmetry and allocates nothing
+//the file is MAGIC, the maximum number of empty cells, the number of positions, their keys in ascending order, then one
+//byte per position: the score + 1 for the player to act and the best action shifted by ACTION_SHIFT
+//the file is not compressed: the lookups binary search the keys right in the mapping, which needs them at fixed offsets,
+//and the canonical keys already leave out the equivalent copies of a position that make up most of a raw table
+//instances never change after they are opened and can be shared between threads
+public class QuartoTablebase {
+
+	//the second version, keyed canonically
+	private static final int MAGIC = 0x51544232;
+	private static final int HEADER_BYTES = 12;
+	private static final int ACTION_SHIFT = 2;
+
+	private static final int NUMBER_OF_ROWS = 5;
+	private static final int NUMBER_OF_COLUMNS = 5;
+	private static final int NUMBER_OF_PIECES = 32;
+
+	//a generous limit, positions the solver can not prove in this time are left out
+	private static final long SOLVE_NANOS = 60 * 1000000000L;
+	private static final int SOLVER_TABLE_SIZE = 1 << 20;
+
+	private final int maximumEmptyCells;
+	private final LongBuffer keys;
+	private final ByteBuffer entries;
+	private final int size;
+
+	private QuartoTablebase(int maximumEmptyCells, LongBuffer keys, ByteBuffer entries, int size) {
+		this.maximumEmptyCells = maximumEmptyCells;
+		this.keys = keys;
+		this.entries = entries;
+		this.size = size;
+	}
+
+	public static QuartoTablebase open(String fileName) throws IOException {
+
+		try(FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+				throw new IOException(fileName + " is not a tablebase");
+			}
+			int maximumEmptyCells = buffer.getInt(4);
+			int size = buffer.getInt(8);
+			if(size < 0 || buffer.capacity() != HEADER_BYTES + (long) size * (Long.BYTES + 1)) {
+				throw new IOException(fileName + " has the wrong size for " + size + " positions");
+			}
+			buffer.position(HEADER_BYTES);
+			LongBuffer keys = buffer.slice().asLongBuffer();
+			buffer.position(HEADER_BYTES + size * Long.BYTES);
+			return new QuartoTablebase(maximumEmptyCells, keys, buffer.slice(), size);
+		}
+	}
+
+	public int getMaximumEmptyCells() {
+		return this.maximumEmptyCells;
+	}
+
+	public int getSize() {
+		return this.size;
+	}
+
+	//the entry of the position with piece in hand (-1 when a piece has to be chosen), -1 when it is not in the table
+	//getValue and getAction take the entry apart
+	public int lookUp(QuartoBoard board, int piece) {
+
+		QuartoSymmetry symmetry = QuartoSymmetry.forBoard(board);
+		long key = symmetry.getCanonicalHash(board, piece);
+		int low = 0;
+		int high = this.size - 1;
+		while(low <= high) {
+			int middle = (low + high) >>> 1;
+			long middleKey = this.keys.get(middle);
+			if(middleKey < key) {
+				low = middle + 1;
+			} else if(middleKey > key) {
+				high = middle - 1;
+			} else {
+				int entry = this.entries.get(middle);
+				int element = symmetry.getCanonicalTransform();
+				int action = piece == -1 ? QuartoSymmetry.fromCanonicalPiece(element, getAction(entry)) : symmetry.fromCanonicalCell(element, getAction(entry));
+				return (entry & ((1 << ACTION_SHIFT) - 1)) | action << ACTION_SHIFT;
+			}
+		}
+		return -1;
+	}
+
+	//QuartoSolver.WIN, DRAW or LOSS for the player to act
+	public static int getValue(int entry) {
+		return (entry & ((1 << ACTION_SHIFT) - 1)) - 1;
+	}
+
+	//the cell index to place the piece in hand on, or the piece to hand over
+	public static int getAction(int entry) {
+		return entry >>> ACTION_SHIFT;
+	}
+
+	//usage: java QuartoTablebase <tablebaseFileName> <emptyCells> <games>
+	//plays the games on every core, solving every position with at most emptyCells empty cells on the way, and writes the table
+	//solved games are appended to tablebaseFileName.part as they finish, a run started again with the same arguments
+	//skips them, so generation can be stopped at any time
+	public static void main(String[] args) throws IOException, InterruptedException {
+
+		if(args.length < 3) {
+			System.out.println("usage: java QuartoTablebase <tablebaseFileName> <emptyCells> <games>");
+			System.exit(-1);
+		}
+		String fileName = args[0];
+		int emptyCells = Integer.parseInt(args[1]);
+		int games = Integer.parseInt(args[2]);
+		String partFileName = fileName + ".part";
+
+		Map<Long, Byte> results = new HashMap<Long, Byte>();
+		Set<Integer> solvedGames = new HashSet<Integer>();
+		long validBytes = readPart(partFileName, emptyCells, results, solvedGames);
+		System.out.println("Tablebase: " + solvedGames.size() + " games and " + results.size() + " positions already solved");
+
+		//anything after the last complete game was cut off by the previous run and is overwritten
+		try(FileChannel channel = FileChannel.open(Paths.get(partFileName), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			channel.truncate(validBytes);
+		}
+		try(DataOutputStream part = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(partFileName, true)))) {
+
+			if(validBytes == 0) {
+				part.writeInt(MAGIC);
+				part.writeInt(emptyCells);
+				part.flush();
+			}
+			AtomicInteger nextGame = new AtomicInteger();
+			Thread[] workers = new Thread[Runtime.getRuntime().availableProcessors()];
+			for(int i = 0; i < workers.length; i++) {
+
+				workers[i] = new Thread(() -> {
+					QuartoSolver solver = new QuartoSolver(SOLVER_TABLE_SIZE);
+					long[] keys = new long[2 * NUMBER_OF_ROWS * NUMBER_OF_COLUMNS];
+					byte[] entries = new byte[keys.length];
+					for(int game = nextGame.getAndIncrement(); game < games; game = nextGame.getAndIncrement()) {
+
+						if(solvedGames.contains(game)) {
+							continue;
+						}
+						int positions = playGame(game, emptyCells, solver, keys, entries);
+						synchronized(part) {
+							try {
+								part.writeInt(game);
+								part.writeInt(positions);
+								for(int j = 0; j < positions; j++) {
+									part.writeLong(keys[j]);
+									part.writeByte(entries[j]);
+									results.put(keys[j], entries[j]);
+								}
+								part.flush();
+							} catch(IOException e) {
+								throw new Error(e);
+							}
+							if(game % 100 == 0) {
+								System.out.println("Tablebase: game " + game + ", " + results.size() + " positions");
+							}
+						}
+					}
+				});
+				workers[i].start();
+			}
+			for(Thread worker: workers) {
+				worker.join();
+			}
+		}
+		write(fileName, emptyCells, results);
+		System.out.println("Tablebase: " + results.size() + " positions written to " + fileName);
+	}
+
+	//reads the games solved by earlier runs and returns the length of the file up to the last complete one
+	private static long readPart(String partFileName, int emptyCells, Map<Long, Byte> results, Set<Integer> solvedGames) throws IOException {
+
+		long validBytes = 0;
+		if(!Files.exists(Paths.get(partFileName))) {
+			return validBytes;
+		}
+		try(DataInputStream part = new DataInputStream(new BufferedInputStream(new FileInputStream(partFileName)))) {
+
+			if(part.readInt() != MAGIC || part.readInt() != emptyCells) {
+				throw new IOException(partFileName + " was generated with other arguments");
+			}
+			validBytes = 2 * Integer.BYTES;
+			long[] keys = new long[2 * NUMBER_OF_ROWS * NUMBER_OF_COLUMNS];
+			byte[] entries = new byte[keys.length];
+			while(true) {
+				int game = part.readInt();
+				int positions = part.readInt();
+				for(int i = 0; i < positions; i++) {
+					keys[i] = part.readLong();
+					entries[i] = part.readByte();
+				}
+				for(int i = 0; i < positions; i++) {
+					results.put(keys[i], entries[i]);
+				}
+				solvedGames.add(game);
+				validBytes += 2 * Integer.BYTES + positions * (Long.BYTES + 1);
+			}
+		} catch(EOFException e) {
+			//the last game was not written completely
+		}
+		return validBytes;
+	}
+
+	private static void write(String fileName, int emptyCells, Map<Long, Byte> results) throws IOException {
+
+		long[] keys = new long[results.size()];
+		int size = 0;
+		for(long key: results.keySet()) {
+			keys[size++] = key;
+		}
+		Arrays.sort(keys);
+
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + size * (Long.BYTES + 1));
+		buffer.putInt(MAGIC).putInt(emptyCells).putInt(size);
+		for(long key: keys) {
+			buffer.putLong(key);
+		}
+		for(long key: keys) {
+			buffer.put(results.get(key));
+		}
+		buffer.rewind();
+		try(FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while(buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	//plays game number game with random cells and random pieces that do not lose on the spot, so most games reach the endgame,
+	//and stores every position with at most emptyCells empty cells the solver proves in keys and entries, returns how many
+	private static int playGame(int game, int emptyCells, QuartoSolver solver, long[] keys, byte[] entries) {
+
+		SplittableRandom random = new SplittableRandom(game);
+		QuartoBoard board = new QuartoBoard(NUMBER_OF_ROWS, NUMBER_OF_COLUMNS, NUMBER_OF_PIECES, null);
+		int cells = NUMBER_OF_ROWS * NUMBER_OF_COLUMNS;
+		int positions = 0;
+		int piece = randomSafePiece(random, board);
+
+		while(true) {
+
+			if(cells - board.getNumberOfMoves() <= emptyCells) {
+				positions = solve(solver, board, piece, keys, entries, positions);
+			}
+			int free = ~board.getOccupiedCellMask() & ((1 << cells) - 1);
+			int cell = nthSetBit(free, random.nextInt(Integer.bitCount(free)));
+			board.insertPieceOnBoard(cell / NUMBER_OF_COLUMNS, cell % NUMBER_OF_COLUMNS, piece);
+			if(board.isWinningMove(cell / NUMBER_OF_COLUMNS, cell % NUMBER_OF_COLUMNS) || board.checkIfBoardIsFull()) {
+				return positions;
+			}
+			if(cells - board.getNumberOfMoves() <= emptyCells) {
+				positions = solve(solver, board, -1, keys, entries, positions);
+			}
+			piece = randomSafePiece(random, board);
+		}
+	}
+
+	private static int solve(QuartoSolver solver, QuartoBoard board, int piece, long[] keys, byte[] entries, int positions) {
+
+		if(!solver.solve(board, piece, System.nanoTime() + SOLVE_NANOS)) {
+			return positions;
+		}
+		QuartoSymmetry symmetry = QuartoSymmetry.forBoard(board);
+		keys[positions] = symmetry.getCanonicalHash(board, piece);
+		int element = symmetry.getCanonicalTransform();
+		int action = piece == -1 ? QuartoSymmetry.toCanonicalPiece(element, solver.getBestAction()) : symmetry.toCanonicalCell(element, solver.getBestAction());
+		entries[positions] = (byte) ((solver.getValue() + 1) | (action << ACTION_SHIFT));
+		return positions + 1;
+	}
+
+	//a random piece that can not win on any free cell, or a random piece when they all can
+	private static int randomSafePiece(SplittableRandom random, QuartoBoard board) {
+
+		int free = ~board.getPiecesInPlayMask() & (int) ((1L << NUMBER_OF_PIECES) - 1);
+		int safe = free & ~board.getWinningPieces();
+		int choices = safe != 0 ? safe : free;
+		return nthSetBit(choices, random.nextInt(Integer.bitCount(choices)));
+	}
+
+	private static int nthSetBit(int bits, int n) {
+		for(int i = 0; i < n; i++) {
+			bits &= bits - 1;
+		}
+		return Integer.numberOfTrailingZeros(bits);
+	}
+
+}
@@ -0,0 +1,113 @@
+//decides how long every search may run and reports how the time was spent
+//the server's limit runs from sending its request until our answer arrives, so the budget also has to cover the network
+//both ways and everything around the search; the server acknowledges every answer straight away, so the time from
+//writing an answer to reading its acknowledgment is a round trip, measured by GameClient
+//all times come from System.nanoTime, which unlike the wall clock never jumps
+public class QuartoTimeManager {
+
+	//margin used until a round trip has been measured, what the agent always kept free before
+	private static final long DEFAULT_OVERHEAD_NANOS = 1000 * 1000000L;
+	//kept free on top of the round trips for stopping the search threads, garbage collection and printing the tree
+	private static final long SAFETY_MARGIN_NANOS = 500 * 1000000L;
+	//round trips vary, the overhead allowed for is the largest one seen times this factor
+	private static final int ROUND_TRIP_FACTOR = 2;
+
+	//opening decisions get a share of the budget: positions are alike, the tree is kept for later turns
+	//and the midgame, where games are decided, gets the full time
+	private static final int OPENING_PIECES = 4;
+	private static final double OPENING_SHARE = 0.5;
+	//later decisions are critical when the safe pieces, the free ones that can not win anywhere, are down to a few
+	//(QuartoEvaluator: with more of them a position is within noise of a draw) or several lines wait for their last
+	//piece; they get CRITICAL_BOOST more time, taken from the overhead margin but never more than the measured round
+	//trips leave spare (getSpareOverheadNanos)
+	private static final int CRITICAL_SAFE_PIECES = 5;
+	private static final int CRITICAL_THREATS = 2;
+	private static final double CRITICAL_BOOST = 0.25;
+
+	private final long timeLimitNanos;
+	private final GameClient gameClient;
+	private long maximumRoundTripNanos;
+	//how long after its deadline an answer was ready at worst: stopping threads, printing and, with big trees,
+	//garbage collection pauses all happen after the deadline
+	private long maximumLatenessNanos;
+
+	//the decision being made: when its request arrived, the time the search was given and its deadline
+	private long requestNanos;
+	private long budgetNanos;
+	private long deadlineNanos;
+	private boolean critical;
+
+	//gameClient may be null, then nothing is measured and the default overhead is kept
+	public QuartoTimeManager(int timeLimitMillis, GameClient gameClient) {
+		this.timeLimitNanos = timeLimitMillis * 1000000L;
+		this.gameClient = gameClient;
+		this.maximumRoundTripNanos = -1;
+	}
+
+	//the network and processing time to keep free from the time limit
+	public long getOverheadNanos() {
+		if(this.maximumRoundTripNanos < 0) {
+			return DEFAULT_OVERHEAD_NANOS + this.maximumLatenessNanos;
+		}
+		return this.maximumRoundTripNanos * ROUND_TRIP_FACTOR + SAFETY_MARGIN_NANOS + this.maximumLatenessNanos;
+	}
+
+	//the part of the overhead a critical decision may use: what is allowed for beyond the largest round trip and half the
+	//safety margin, nothing until a round trip has been measured
+	private long getSpareOverheadNanos() {
+		if(this.maximumRoundTripNanos < 0) {
+			return 0;
+		}
+		return this.maximumRoundTripNanos * (ROUND_TRIP_FACTOR - 1) + SAFETY_MARGIN_NANOS / 2;
+	}
+
+	private static boolean isCritical(QuartoBoard board) {
+		int freePieces = ~board.getPiecesInPlayMask() & (int) ((1L << board.getNumberOfPieces()) - 1);
+		int safePieces = Integer.bitCount(freePieces & ~board.getWinningPieces());
+		//a line of the 5x5 board with one empty cell left
+		int threats = board.getLiveLines(board.getNumberOfColumns() - 1);
+		return safePieces <= CRITICAL_SAFE_PIECES || threats >= CRITICAL_THREATS;
+	}
+
+	//starts timing a decision on board and returns the System.nanoTime deadline for its search
+	public long startDecision(QuartoBoard board) {
+
+		long now = System.nanoTime();
+		this.requestNanos = now;
+		if(this.gameClient != null) {
+			this.maximumRoundTripNanos = Math.max(this.maximumRoundTripNanos, this.gameClient.getLastRoundTripNanos());
+			if(this.gameClient.getLastReadNanos() != -1) {
+				this.requestNanos = this.gameClient.getLastReadNanos();
+			}
+		}
+
+		long available = this.timeLimitNanos - this.getOverheadNanos() - (now - this.requestNanos);
+		this.critical = false;
+		if(board.getNumberOfMoves() < OPENING_PIECES) {
+			available = (long) (available * OPENING_SHARE);
+		} else if(available > 0 && isCritical(board)) {
+			this.critical = true;
+			available += Math.min((long) (available * CRITICAL_BOOST), this.getSpareOverheadNanos());
+		}
+		this.budgetNanos = Math.max(0, available);
+		this.deadlineNanos = now + this.budgetNanos;
+		return this.deadlineNanos;
+	}
+
+	//the System.nanoTime deadline for pondering started now: the opponent has the same time limit, so its answer comes
+	//before a decision of ours could have used up its budget
+	public long getPonderDeadline() {
+		return System.nanoTime() + Math.max(0, this.timeLimitNanos - this.getOverheadNanos());
+	}
+
+	//logs the budget of the decision and the time it took from the request to now
+	public void endDecision() {
+
+		long now = System.nanoTime();
+		long lateness = now - this.deadlineNanos;
+		System.out.println("Time: budget " + this.budgetNanos / 1000000 + " ms" + (this.critical ? " (critical)" : "") + ", used " + (now - this.requestNanos) / 1000000 + " ms since the request, "
+				+ Math.max(0, lateness) / 1000000 + " ms after the deadline, overhead allowed " + this.getOverheadNanos() / 1000000 + " ms");
+		this.maximumLatenessNanos = Math.max(this.maximumLatenessNanos, lateness);
+	}
+
+}
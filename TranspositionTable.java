@@ -0,0 +1,101 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+//bounded table of search nodes by position hash, so a position reached through different move orders is searched once
+//entries sit in buckets of BUCKET_SIZE and a full bucket gives up its least visited node
+//buckets are guarded by striped locks so threads sharing a tree can use one table
+class TranspositionTable{
+
+	private static final int BUCKET_SIZE = 4;
+	private static final int LOCK_STRIPES = 64;
+
+	private final NodeArena tree;
+	private final long[] keys;
+	private final int[] nodes;
+	private final int bucketMask;
+	private final Object[] locks;
+
+	private final LongAdder hits;
+	private final LongAdder misses;
+	private final LongAdder replacements;
+
+	//the nodes are the ones of tree
+	public TranspositionTable(int entries, NodeArena tree){
+
+		int buckets = Integer.highestOneBit(Math.max(1, entries / BUCKET_SIZE));
+		this.tree = tree;
+		this.keys = new long[buckets * BUCKET_SIZE];
+		this.nodes = new int[buckets * BUCKET_SIZE];
+		Arrays.fill(this.nodes, NodeArena.NONE);
+		this.bucketMask = buckets - 1;
+		this.locks = new Object[LOCK_STRIPES];
+		for(int i = 0; i < LOCK_STRIPES; i++){
+			this.locks[i] = new Object();
+		}
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.replacements = new LongAdder();
+	}
+	private int bucket(long key){
+		return (int)(key ^ (key >>> 32)) & this.bucketMask;
+	}
+	//NodeArena.NONE when the position is not in the table
+	public int get(long key){
+
+		int bucket = bucket(key);
+		synchronized(this.locks[bucket & (LOCK_STRIPES - 1)]){
+
+			for(int i = bucket * BUCKET_SIZE; i < (bucket + 1) * BUCKET_SIZE; i++){
+
+				if(this.nodes[i] != NodeArena.NONE && this.keys[i] == key){
+
+					this.hits.increment();
+					return this.nodes[i];
+				}
+			}
+		}
+		this.misses.increment();
+		return NodeArena.NONE;
+	}
+	public void put(long key, int node){
+
+		int bucket = bucket(key);
+		synchronized(this.locks[bucket & (LOCK_STRIPES - 1)]){
+
+			int replace = bucket * BUCKET_SIZE;
+			for(int i = bucket * BUCKET_SIZE; i < (bucket + 1) * BUCKET_SIZE; i++){
+
+				if(this.nodes[i] == NodeArena.NONE || this.keys[i] == key){
+
+					replace = i;
+					break;
+				}
+				if(this.tree.getN(this.nodes[i]) < this.tree.getN(this.nodes[replace]))
+					replace = i;
+			}
+			if(this.nodes[replace] != NodeArena.NONE && this.keys[replace] != key)
+				this.replacements.increment();
+
+			this.keys[replace] = key;
+			this.nodes[replace] = node;
+		}
+	}
+	//drops the entries of nodes the tree has freed, while no thread uses the table
+	public void removeFreeNodes(){
+
+		for(int i = 0; i < this.nodes.length; i++){
+
+			if(this.nodes[i] != NodeArena.NONE && this.tree.isFree(this.nodes[i]))
+				this.nodes[i] = NodeArena.NONE;
+		}
+	}
+	public long getHits(){
+		return this.hits.sum();
+	}
+	public long getMisses(){
+		return this.misses.sum();
+	}
+	public long getReplacements(){
+		return this.replacements.sum();
+	}
+}